@@ -0,0 +1,80 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+/**
+ * Point-in-time snapshot of the counters of the compiled-pattern cache used by {@link Xeger#compile}.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int capacity;
+
+    CacheStats(long hits, long misses, long evictions, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found an already compiled pattern.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to compile the pattern.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of compiled patterns dropped to keep the cache within its capacity.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of compiled patterns currently held.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of compiled patterns held.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", size=" + size + "/" + capacity + "]";
+    }
+}
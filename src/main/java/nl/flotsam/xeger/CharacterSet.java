@@ -18,14 +18,25 @@
  */
 package nl.flotsam.xeger;
 
+import dk.brics.automaton.Automaton;
+
+import java.util.Arrays;
+
 /**
- * Defines the character range that {@link Xeger} is allowed to produce when
+ * Defines the characters that {@link Xeger} is allowed to produce when
  * picking a character from a DFA transition.
  *
- * <p>When a transition spans characters outside the allowed range the generator
- * clamps the random pick to the intersection of the transition range and the
- * allowed range.  If a transition has no overlap with the allowed range it is
- * skipped entirely and the next valid transition is used instead.
+ * <p>The automaton of the regular expression is intersected with the automaton
+ * accepting any string of allowed characters when the pattern is compiled, so
+ * generation only ever follows transitions within the set, and never runs into
+ * a state from which no match can be completed. A pattern none of whose matches
+ * fits in the set is rejected when compiled. Since the intersection splits
+ * transitions along the ranges of the set, the weight of every transition is
+ * exactly the number of allowed characters it covers.
+ *
+ * <p>A set is any non-empty union of character ranges, kept as a sorted array
+ * of disjoint ranges: membership and clamping take O(log r) time for r ranges,
+ * and {@link #union} and {@link #intersect} a single merge pass.
  *
  * <h3>Built-in presets</h3>
  * <ul>
@@ -35,12 +46,19 @@ package nl.flotsam.xeger;
  *       characters.</li>
  *   <li>{@link #PRINTABLE_ASCII} - printable ASCII only (0x20 to 0x7E, i.e. space
  *       through tilde); the most human-readable option.</li>
+ *   <li>{@link #DIGITS}, {@link #UPPERCASE}, {@link #LOWERCASE},
+ *       {@link #LETTERS}, {@link #ALPHANUMERIC}, {@link #WORD},
+ *       {@link #WHITESPACE} and {@link #PUNCTUATION} - the ASCII character
+ *       classes.</li>
  * </ul>
  *
- * <h3>Custom ranges</h3>
- * Use {@link #of(char, char)} to create a custom single-range character set:
+ * <h3>Custom sets</h3>
+ * Use {@link #of(char, char)} for a single contiguous range, {@link #anyOf}
+ * for individual characters, and combine sets with {@link #union},
+ * {@link #intersect} and {@link #complement}:
  * <pre>
  *     CharacterSet latinLetters = CharacterSet.of('A', 'z');
+ *     CharacterSet identifiers = CharacterSet.ALPHANUMERIC.union(CharacterSet.anyOf("_-."));
  * </pre>
  */
 public class CharacterSet {
@@ -57,15 +75,49 @@ public class CharacterSet {
      */
     public static final CharacterSet PRINTABLE_ASCII = new CharacterSet('\u0020', '\u007E');
 
-    private final char min;
-    private final char max;
+    /** The digits {@code 0} to {@code 9}. */
+    public static final CharacterSet DIGITS          = new CharacterSet('0', '9');
+
+    /** The ASCII uppercase letters {@code A} to {@code Z}. */
+    public static final CharacterSet UPPERCASE       = new CharacterSet('A', 'Z');
+
+    /** The ASCII lowercase letters {@code a} to {@code z}. */
+    public static final CharacterSet LOWERCASE       = new CharacterSet('a', 'z');
+
+    /** The ASCII letters. */
+    public static final CharacterSet LETTERS         = UPPERCASE.union(LOWERCASE);
+
+    /** The ASCII letters and digits. */
+    public static final CharacterSet ALPHANUMERIC    = LETTERS.union(DIGITS);
+
+    /** The characters of {@code \w}: ASCII letters, digits and the underscore. */
+    public static final CharacterSet WORD            = ALPHANUMERIC.union(new CharacterSet('_', '_'));
+
+    /** The characters of {@code \s}: space, tab, line feed and carriage return. */
+    public static final CharacterSet WHITESPACE      = anyOf(" \t\n\r");
+
+    /** The printable ASCII characters that are neither letters, digits nor space. */
+    public static final CharacterSet PUNCTUATION     =
+            PRINTABLE_ASCII.intersect(ALPHANUMERIC.union(anyOf(" ")).complement());
+
+    /**
+     * Sorted, disjoint and non-adjacent ranges, as consecutive (min, max) pairs;
+     * never empty.
+     */
+    private final char[] ranges;
 
     private CharacterSet(char min, char max) {
         if (min > max) {
             throw new IllegalArgumentException("min (" + (int) min + ") must be <= max (" + (int) max + ")");
         }
-        this.min = min;
-        this.max = max;
+        this.ranges = new char[]{min, max};
+    }
+
+    private CharacterSet(char[] ranges) {
+        if (ranges.length == 0) {
+            throw new IllegalArgumentException("A character set must contain at least one character");
+        }
+        this.ranges = ranges;
     }
 
     /**
@@ -80,45 +132,172 @@ public class CharacterSet {
         return new CharacterSet(min, max);
     }
 
+    /**
+     * Creates a character set holding exactly the given characters.
+     *
+     * @param characters The allowed characters. (Not <code>null</code>.)
+     * @throws IllegalArgumentException if {@code characters} is empty.
+     */
+    public static CharacterSet anyOf(CharSequence characters) {
+        assert characters != null;
+        char[] sorted = characters.toString().toCharArray();
+        Arrays.sort(sorted);
+        char[] ranges = new char[sorted.length * 2];
+        int count = 0;
+        for (char c : sorted) {
+            if (count > 0 && c <= ranges[count - 1] + 1) {
+                ranges[count - 1] = c;
+            } else {
+                ranges[count++] = c;
+                ranges[count++] = c;
+            }
+        }
+        return new CharacterSet(Arrays.copyOf(ranges, count));
+    }
+
+    /**
+     * Returns the set of characters in this set, in {@code other}, or in both.
+     */
+    public CharacterSet union(CharacterSet other) {
+        char[] merged = new char[ranges.length + other.ranges.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ranges.length || j < other.ranges.length) {
+            char[] next;
+            int k;
+            if (j >= other.ranges.length || (i < ranges.length && ranges[i] <= other.ranges[j])) {
+                next = ranges;
+                k = i;
+                i += 2;
+            } else {
+                next = other.ranges;
+                k = j;
+                j += 2;
+            }
+            if (count > 0 && next[k] <= merged[count - 1] + 1) {
+                merged[count - 1] = (char) Math.max(merged[count - 1], next[k + 1]);
+            } else {
+                merged[count++] = next[k];
+                merged[count++] = next[k + 1];
+            }
+        }
+        return new CharacterSet(Arrays.copyOf(merged, count));
+    }
+
+    /**
+     * Returns the set of characters in both this set and {@code other}.
+     *
+     * @throws IllegalArgumentException if the sets have no character in common.
+     */
+    public CharacterSet intersect(CharacterSet other) {
+        char[] common = new char[ranges.length + other.ranges.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ranges.length && j < other.ranges.length) {
+            char low = (char) Math.max(ranges[i], other.ranges[j]);
+            char high = (char) Math.min(ranges[i + 1], other.ranges[j + 1]);
+            if (low <= high) {
+                common[count++] = low;
+                common[count++] = high;
+            }
+            if (ranges[i + 1] < other.ranges[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return new CharacterSet(Arrays.copyOf(common, count));
+    }
+
+    /**
+     * Returns the set of characters of the Unicode BMP not in this set.
+     *
+     * @throws IllegalArgumentException if this set is {@link #UNICODE}.
+     */
+    public CharacterSet complement() {
+        char[] gaps = new char[ranges.length + 2];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                gaps[count++] = (char) next;
+                gaps[count++] = (char) (ranges[i] - 1);
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            gaps[count++] = (char) next;
+            gaps[count++] = Character.MAX_VALUE;
+        }
+        return new CharacterSet(Arrays.copyOf(gaps, count));
+    }
+
     /**
      * Returns the lowest character in this set (inclusive).
      */
     public char getMin() {
-        return min;
+        return ranges[0];
     }
 
     /**
      * Returns the highest character in this set (inclusive).
      */
     public char getMax() {
-        return max;
+        return ranges[ranges.length - 1];
+    }
+
+    /**
+     * Returns the number of disjoint ranges making up this set.
+     */
+    public int getRangeCount() {
+        return ranges.length / 2;
     }
 
     /**
      * Returns {@code true} if the given character falls within this set.
      */
     public boolean contains(char c) {
-        return c >= min && c <= max;
+        int range = rangeAtOrBelow(c);
+        return range >= 0 && c <= ranges[range + 1];
     }
 
     /**
-     * Returns the effective minimum character for a transition whose own range
-     * is [{@code transitionMin}, {@code transitionMax}], clamped to this set.
-     * Returns {@code (char) -1} if the transition and this set do not overlap.
+     * Returns the lowest character of this set that is not below
+     * {@code transitionMin}, i.e. the effective minimum of a transition range
+     * starting there, clamped to this set. Returns {@code (char) -1} if there
+     * is none, which cannot be told apart from {@code '\uFFFF'} itself.
      */
     public char clampMin(char transitionMin) {
-        if (transitionMin > max) return (char) -1;
-        return (char) Math.max(transitionMin, min);
+        int low = lowestFrom(transitionMin);
+        return low >= 0 ? (char) low : (char) -1;
+    }
+
+    /**
+     * Same as {@link #clampMin(char)}, returning -1 rather than a character if
+     * there is none.
+     */
+    int lowestFrom(char transitionMin) {
+        int range = rangeAtOrBelow(transitionMin);
+        if (range >= 0 && transitionMin <= ranges[range + 1]) {
+            return transitionMin;
+        }
+        return range + 2 < ranges.length ? ranges[range + 2] : -1;
     }
 
     /**
-     * Returns the effective maximum character for a transition whose own range
-     * is [{@code transitionMin}, {@code transitionMax}], clamped to this set.
-     * Returns {@code (char) -1} if the transition and this set do not overlap.
+     * Returns the highest character of this set that is not above
+     * {@code transitionMax}, i.e. the effective maximum of a transition range
+     * ending there, clamped to this set. Returns {@code (char) -1} if there is
+     * none.
      */
     public char clampMax(char transitionMax) {
-        if (transitionMax < min) return (char) -1;
-        return (char) Math.min(transitionMax, max);
+        int range = rangeAtOrBelow(transitionMax);
+        if (range < 0) {
+            return (char) -1;
+        }
+        return (char) Math.min(transitionMax, ranges[range + 1]);
     }
 
     /**
@@ -126,11 +305,84 @@ public class CharacterSet {
      * to this set and to the transition range [{@code tMin}, {@code tMax}].
      */
     public boolean overlaps(char tMin, char tMax) {
-        return tMin <= max && tMax >= min;
+        int low = lowestFrom(tMin);
+        return low >= 0 && low <= tMax && tMin <= tMax;
+    }
+
+    /**
+     * Returns the index in {@link #ranges} of the last range starting at or
+     * below {@code c}, or -2 if every range starts above it.
+     */
+    private int rangeAtOrBelow(char c) {
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ranges[2 * mid] <= c) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return 2 * high;
+    }
+
+    /**
+     * Returns a copy of the ranges of this set, as consecutive (min, max) pairs.
+     */
+    char[] toRanges() {
+        return ranges.clone();
+    }
+
+    /**
+     * Recreates a set from the output of {@link #toRanges()}.
+     *
+     * @throws IllegalArgumentException if the ranges are empty, unsorted or overlapping.
+     */
+    static CharacterSet fromRanges(char[] ranges) {
+        if (ranges.length % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of range bounds: " + ranges.length);
+        }
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > ranges[i + 1] || (i > 0 && ranges[i] <= ranges[i - 1] + 1)) {
+                throw new IllegalArgumentException("Ranges not sorted and disjoint at " + i / 2);
+            }
+        }
+        return new CharacterSet(ranges.clone());
+    }
+
+    /**
+     * Returns an automaton accepting any string made up of characters in this set.
+     */
+    Automaton toAutomaton() {
+        Automaton single = Automaton.makeCharRange(ranges[0], ranges[1]);
+        for (int i = 2; i < ranges.length; i += 2) {
+            single = single.union(Automaton.makeCharRange(ranges[i], ranges[i + 1]));
+        }
+        return single.repeat();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof CharacterSet)) return false;
+        return Arrays.equals(ranges, ((CharacterSet) other).ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
     }
 
     @Override
     public String toString() {
-        return "CharacterSet[" + (int) min + ".." + (int) max + "]";
+        StringBuilder builder = new StringBuilder("CharacterSet[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append((int) ranges[i]).append("..").append((int) ranges[i + 1]);
+        }
+        return builder.append(']').toString();
     }
 }
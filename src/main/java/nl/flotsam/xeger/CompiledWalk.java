@@ -0,0 +1,41 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.Random;
+
+/**
+ * Base class of the pattern-specific classes emitted by {@link WalkCompiler}. Not meant to be used or extended
+ * directly: it is only public because the generated classes live in class loaders of their own.
+ */
+public abstract class CompiledWalk {
+
+    protected CompiledWalk() {
+    }
+
+    /**
+     * Performs exactly the walk of {@link XegerPattern#generate(Random)} without length bounds, drawing the same
+     * values from {@code random} in the same order, so the result is the same for the same seed.
+     *
+     * <p>The caller has checked that the shortest match fits within {@code limit}.
+     *
+     * @return The number of characters written into {@code buffer} from {@code offset} on.
+     */
+    protected abstract int walk(char[] buffer, int offset, int limit, Random random, int maxLoops);
+}
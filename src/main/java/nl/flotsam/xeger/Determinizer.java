@@ -0,0 +1,347 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.BasicAutomata;
+import dk.brics.automaton.BasicOperations;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compilation of a regular expression within a budget of deterministic states and time, giving up with a
+ * {@link PatternTooComplexException} as soon as either runs out.
+ *
+ * <p>brics itself cannot do this: {@link RegExp#toAutomaton()} determinizes and minimizes after every operator, with
+ * no limit, so a pattern like {@code (a|b)*a(a|b){25}}, whose deterministic automaton has 2<sup>26</sup> states,
+ * runs until the heap is exhausted. Instead, {@link #nondeterministic(RegExp)} builds an automaton of linear size
+ * from the parsed expression with brics' operations that do not determinize, and {@link #determinize(Automaton)}
+ * runs the subset construction, counting states and checking the clock as it goes. Each deterministic state is a
+ * sorted set of nondeterministic states; its transitions are found by splitting the character ranges of all their
+ * transitions at every range boundary, as {@link Automaton#determinize()} does.
+ *
+ * <p>The parsed expression is only reachable through package-private fields of {@link RegExp}, read reflectively.
+ * Should they be missing, compiling within a budget fails with an {@link IllegalStateException} saying so, rather
+ * than quietly compiling without the budget the caller asked for. The complement and intersection
+ * operators ({@code ~} and {@code &}) determinize their operands in brics, without a budget either.
+ */
+final class Determinizer {
+
+    private final String regex;
+    private final int maxStates;
+    private final long start;
+    private final long timeoutNanos;
+
+    /**
+     * @param maxStates     Maximum number of deterministic states, or 0 for no limit.
+     * @param timeoutMillis Maximum time since {@code start}, or 0 for no limit.
+     * @param start         Start of the compilation, from {@link System#nanoTime()}.
+     */
+    Determinizer(String regex, int maxStates, long timeoutMillis, long start) {
+        this.regex = regex;
+        this.maxStates = maxStates > 0 ? maxStates : Integer.MAX_VALUE;
+        this.start = start;
+        this.timeoutNanos = timeoutMillis > 0 ? timeoutMillis * 1000000L : Long.MAX_VALUE;
+    }
+
+    private static volatile Fields regExpFields;
+
+    /**
+     * Returns an automaton, in general nondeterministic, accepting the language of the given expression.
+     *
+     * @throws IllegalArgumentException   If the expression refers to a named automaton, none of which are defined.
+     * @throws PatternTooComplexException If the time runs out.
+     * @throws IllegalStateException      If the version of brics on the class path lacks the fields of {@link RegExp}
+     *                                    read here.
+     */
+    Automaton nondeterministic(RegExp regExp) {
+        Fields fields = regExpFields;
+        if (fields == null) {
+            fields = Fields.of(RegExp.class);
+            regExpFields = fields;
+        }
+        try {
+            return build(regExp, fields);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Automaton build(RegExp regExp, Fields fields) throws IllegalAccessException {
+        checkTime(0);
+        String kind = ((Enum<?>) fields.kind.get(regExp)).name();
+        switch (kind) {
+            case "REGEXP_UNION":
+            case "REGEXP_CONCATENATION":
+                // Flatten nested unions (concatenations) into one operation, as brics does, rather than copying the
+                // partial results over and over.
+                List<Automaton> operands = new ArrayList<Automaton>();
+                Deque<RegExp> todo = new ArrayDeque<RegExp>();
+                todo.push(regExp);
+                while (!todo.isEmpty()) {
+                    RegExp next = todo.pop();
+                    if (((Enum<?>) fields.kind.get(next)).name().equals(kind)) {
+                        todo.push((RegExp) fields.exp2.get(next));
+                        todo.push((RegExp) fields.exp1.get(next));
+                    } else {
+                        operands.add(build(next, fields));
+                    }
+                }
+                return kind.equals("REGEXP_UNION")
+                        ? BasicOperations.union(operands) : BasicOperations.concatenate(operands);
+            case "REGEXP_INTERSECTION":
+                return build((RegExp) fields.exp1.get(regExp), fields)
+                        .intersection(build((RegExp) fields.exp2.get(regExp), fields));
+            case "REGEXP_OPTIONAL":
+                return build((RegExp) fields.exp1.get(regExp), fields).optional();
+            case "REGEXP_REPEAT":
+                return build((RegExp) fields.exp1.get(regExp), fields).repeat();
+            case "REGEXP_REPEAT_MIN":
+                return build((RegExp) fields.exp1.get(regExp), fields).repeat(fields.min.getInt(regExp));
+            case "REGEXP_REPEAT_MINMAX":
+                return build((RegExp) fields.exp1.get(regExp), fields)
+                        .repeat(fields.min.getInt(regExp), fields.max.getInt(regExp));
+            case "REGEXP_COMPLEMENT":
+                return build((RegExp) fields.exp1.get(regExp), fields).complement();
+            case "REGEXP_CHAR":
+                return BasicAutomata.makeChar(fields.c.getChar(regExp));
+            case "REGEXP_CHAR_RANGE":
+                return BasicAutomata.makeCharRange(fields.from.getChar(regExp), fields.to.getChar(regExp));
+            case "REGEXP_ANYCHAR":
+                return BasicAutomata.makeAnyChar();
+            case "REGEXP_EMPTY":
+                return BasicAutomata.makeEmpty();
+            case "REGEXP_STRING":
+                return BasicAutomata.makeString((String) fields.s.get(regExp));
+            case "REGEXP_ANYSTRING":
+                return BasicAutomata.makeAnyString();
+            case "REGEXP_INTERVAL":
+                return BasicAutomata.makeInterval(fields.min.getInt(regExp), fields.max.getInt(regExp),
+                        fields.digits.getInt(regExp));
+            default:
+                // Named automata (REGEXP_AUTOMATON), of which none are defined; brics rejects these the same way.
+                return regExp.toAutomaton();
+        }
+    }
+
+    /**
+     * Returns a deterministic automaton accepting the same language as {@code nfa}.
+     *
+     * @throws PatternTooComplexException If the budget runs out first.
+     */
+    Automaton determinize(Automaton nfa) {
+        checkTime(0);
+        Set<State> nfaStates = nfa.getStates();
+        Map<State, Integer> ids = new IdentityHashMap<State, Integer>();
+        State[] byId = new State[nfaStates.size()];
+        State initial = nfa.getInitialState();
+        ids.put(initial, 0);
+        byId[0] = initial;
+        for (State state : nfaStates) {
+            if (!ids.containsKey(state)) {
+                byId[ids.size()] = state;
+                ids.put(state, ids.size());
+            }
+        }
+        Transition[][] transitions = new Transition[byId.length][];
+        int[][] targets = new int[byId.length][];
+        for (int s = 0; s < byId.length; s++) {
+            transitions[s] = byId[s].getTransitions().toArray(new Transition[0]);
+            targets[s] = new int[transitions[s].length];
+            for (int t = 0; t < transitions[s].length; t++) {
+                targets[s][t] = ids.get(transitions[s][t].getDest());
+            }
+        }
+
+        Map<StateSet, State> dfaStates = new HashMap<StateSet, State>();
+        Deque<StateSet> pending = new ArrayDeque<StateSet>();
+        StateSet initialSet = new StateSet(new int[]{0});
+        Automaton dfa = new Automaton();
+        dfa.setInitialState(newState(dfaStates, pending, initialSet, byId));
+        int[] points = new int[16];
+        boolean[] member = new boolean[byId.length];
+        List<Integer> reached = new ArrayList<Integer>();
+        while (!pending.isEmpty()) {
+            StateSet set = pending.remove();
+            State state = dfaStates.get(set);
+            checkTime(dfaStates.size());
+
+            // Every range boundary of the member states' transitions starts an interval of equal behaviour.
+            int pointCount = 0;
+            for (int s : set.states) {
+                for (Transition t : transitions[s]) {
+                    if (pointCount + 2 > points.length) {
+                        points = Arrays.copyOf(points, points.length * 2);
+                    }
+                    points[pointCount++] = t.getMin();
+                    points[pointCount++] = t.getMax() + 1;
+                }
+            }
+            Arrays.sort(points, 0, pointCount);
+            for (int p = 0; p < pointCount - 1; p++) {
+                int from = points[p];
+                int to = points[p + 1] - 1;
+                if (to < from) {
+                    continue;
+                }
+                reached.clear();
+                for (int s : set.states) {
+                    for (int t = 0; t < transitions[s].length; t++) {
+                        Transition transition = transitions[s][t];
+                        if (transition.getMin() <= from && from <= transition.getMax() && !member[targets[s][t]]) {
+                            member[targets[s][t]] = true;
+                            reached.add(targets[s][t]);
+                        }
+                    }
+                }
+                if (reached.isEmpty()) {
+                    continue;
+                }
+                int[] target = new int[reached.size()];
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = reached.get(i);
+                    member[target[i]] = false;
+                }
+                Arrays.sort(target);
+                StateSet targetSet = new StateSet(target);
+                State dest = dfaStates.get(targetSet);
+                if (dest == null) {
+                    dest = newState(dfaStates, pending, targetSet, byId);
+                }
+                state.addTransition(new Transition((char) from, (char) to, dest));
+            }
+        }
+        dfa.setDeterministic(true);
+        dfa.reduce();
+        return dfa;
+    }
+
+    private State newState(Map<StateSet, State> dfaStates, Deque<StateSet> pending, StateSet set, State[] byId) {
+        if (dfaStates.size() >= maxStates) {
+            throw new PatternTooComplexException(regex, PatternTooComplexException.Reason.STATES, dfaStates.size(),
+                    elapsedMillis(), "Determinizing " + regex + " needs more than " + maxStates + " states");
+        }
+        State state = new State();
+        for (int s : set.states) {
+            if (byId[s].isAccept()) {
+                state.setAccept(true);
+                break;
+            }
+        }
+        dfaStates.put(set, state);
+        pending.add(set);
+        return state;
+    }
+
+    private void checkTime(int states) {
+        if (System.nanoTime() - start > timeoutNanos) {
+            throw new PatternTooComplexException(regex, PatternTooComplexException.Reason.TIME, states,
+                    elapsedMillis(), "Compiling " + regex + " takes longer than " + timeoutNanos / 1000000 + " ms");
+        }
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * The package-private fields of {@link RegExp} holding the parsed expression.
+     */
+    static final class Fields {
+        final Field kind;
+        final Field exp1;
+        final Field exp2;
+        final Field s;
+        final Field c;
+        final Field min;
+        final Field max;
+        final Field digits;
+        final Field from;
+        final Field to;
+
+        private Fields(Class<?> type) throws ReflectiveOperationException {
+            kind = field(type, "kind");
+            exp1 = field(type, "exp1");
+            exp2 = field(type, "exp2");
+            s = field(type, "s");
+            c = field(type, "c");
+            min = field(type, "min");
+            max = field(type, "max");
+            digits = field(type, "digits");
+            from = field(type, "from");
+            to = field(type, "to");
+        }
+
+        private static Field field(Class<?> type, String name) throws ReflectiveOperationException {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+
+        /**
+         * Looks up the fields in {@code type}, which is {@link RegExp} except in tests.
+         *
+         * @throws IllegalStateException If one is missing or cannot be made accessible.
+         */
+        static Fields of(Class<?> type) {
+            try {
+                return new Fields(type);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalStateException("Cannot compile within a budget (maxStates, compileTimeoutMillis): "
+                        + "this version of brics automaton has no usable " + type.getName() + " field " + e.getMessage()
+                        + "; use brics automaton 1.11-8 or compile without a budget", e);
+            }
+        }
+    }
+
+    /**
+     * Sorted set of nondeterministic state ids, usable as a map key.
+     */
+    private static final class StateSet {
+        private final int[] states;
+        private final int hash;
+
+        StateSet(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.math.BigInteger;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} over a range of positions in the shortlex order of a finite language, optionally shuffled by
+ * a {@link FeistelPermutation}. Every element is decoded from its (permuted) position alone, so splitting just
+ * halves the range, and each half only needs a buffer of its own.
+ */
+final class EnumerationSpliterator implements Spliterator<String> {
+
+    private static final int CHARACTERISTICS = SIZED | SUBSIZED | ORDERED | DISTINCT | IMMUTABLE | NONNULL;
+
+    private final PathCountTable counts;
+    private final FeistelPermutation permutation;
+    private final char[] buffer;
+    private long index;
+    private final long fence;
+
+    EnumerationSpliterator(PathCountTable counts, FeistelPermutation permutation, long index, long fence) {
+        this.counts = counts;
+        this.permutation = permutation;
+        this.buffer = new char[counts.cap];
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(decode(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        long i = index;
+        long end = fence;
+        index = end;
+        for (; i < end; i++) {
+            action.accept(decode(i));
+        }
+    }
+
+    private String decode(long position) {
+        int length;
+        if (permutation == null) {
+            length = counts.unrank(position, buffer, 0);
+        } else if (permutation.isLong()) {
+            length = counts.unrank(permutation.apply(position), buffer, 0);
+        } else {
+            length = counts.unrank(permutation.apply(BigInteger.valueOf(position)), buffer, 0);
+        }
+        return new String(buffer, 0, length);
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        EnumerationSpliterator prefix = new EnumerationSpliterator(counts, permutation, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+}
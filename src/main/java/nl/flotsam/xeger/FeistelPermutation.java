@@ -0,0 +1,126 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.math.BigInteger;
+
+/**
+ * Keyed pseudo-random permutation of the integers [0, {@code size}), so that walking the indices 0, 1, 2, ... through
+ * it visits every position exactly once, in an order that looks random, with no memory of what was visited.
+ *
+ * <p>A balanced Feistel network over the smallest even number of bits covering {@code size} is a permutation of
+ * that power of two, whatever its round function; values falling outside [0, {@code size}) are encrypted again
+ * (cycle walking) until they land inside, which takes fewer than four rounds of the network on average. Domains
+ * of up to 64 bits use {@code long} arithmetic; larger ones fall back to {@link BigInteger} halves.
+ */
+final class FeistelPermutation {
+
+    private static final int ROUNDS = 6;
+
+    private final BigInteger size;
+    private final long longSize;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] keys = new long[ROUNDS];
+
+    FeistelPermutation(BigInteger size, long seed) {
+        if (size.signum() <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.size = size;
+        this.longSize = size.bitLength() <= 63 ? size.longValue() : -1;
+        this.halfBits = Math.max((size.subtract(BigInteger.ONE).bitLength() + 1) / 2, 1);
+        this.halfMask = halfBits >= 64 ? -1L : (1L << halfBits) - 1;
+        for (int round = 0; round < ROUNDS; round++) {
+            keys[round] = SplitMixRandom.seedAt(seed, round);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the domain fits in a {@code long}, so {@link #apply(long)} can be used.
+     */
+    boolean isLong() {
+        return longSize > 0;
+    }
+
+    /**
+     * Returns the position {@code index} is mapped to. Only valid if {@link #isLong()}.
+     */
+    long apply(long index) {
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (Long.compareUnsigned(value, longSize) >= 0);
+        return value;
+    }
+
+    /**
+     * Returns the position {@code index} is mapped to.
+     */
+    BigInteger apply(BigInteger index) {
+        if (isLong()) {
+            return BigInteger.valueOf(apply(index.longValue()));
+        }
+        BigInteger value = index;
+        do {
+            value = encrypt(value);
+        } while (value.compareTo(size) >= 0);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = (value >>> halfBits) & halfMask;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (SplitMixRandom.mix64(right ^ keys[round]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private BigInteger encrypt(BigInteger value) {
+        BigInteger mask = BigInteger.ONE.shiftLeft(halfBits).subtract(BigInteger.ONE);
+        BigInteger left = value.shiftRight(halfBits);
+        BigInteger right = value.and(mask);
+        for (int round = 0; round < ROUNDS; round++) {
+            BigInteger next = left.xor(roundFunction(right, keys[round]));
+            left = right;
+            right = next;
+        }
+        return left.shiftLeft(halfBits).or(right);
+    }
+
+    /**
+     * Hashes a half of {@code halfBits} bits, 64 bits at a time, into as many pseudo-random bits.
+     */
+    private BigInteger roundFunction(BigInteger half, long key) {
+        int words = (halfBits + 63) >>> 6;
+        long hash = key;
+        for (int w = 0; w < words; w++) {
+            hash = SplitMixRandom.mix64(hash ^ half.shiftRight(w << 6).longValue());
+        }
+        BigInteger result = BigInteger.ZERO;
+        for (int w = 0; w < words; w++) {
+            long word = SplitMixRandom.mix64(hash + w * 0x9e3779b97f4a7c15L);
+            result = result.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(word)));
+        }
+        return result.shiftRight((words << 6) - halfBits);
+    }
+}
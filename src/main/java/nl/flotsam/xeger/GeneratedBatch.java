@@ -0,0 +1,138 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A batch of generated values packed into a single character array, as produced by
+ * {@link XegerPattern#generateBatch(java.util.Random, int)}.
+ *
+ * <p>Value {@code i} occupies the characters [{@link #start(int) start(i)}, {@link #end(int) end(i)}) of
+ * {@link #data()}. No {@link String} is created until one is asked for through {@link #get(int)}, so large batches
+ * cost one character array and one offsets array regardless of the number of values.
+ */
+public final class GeneratedBatch {
+
+    private final char[] data;
+    private final int[] offsets;
+
+    GeneratedBatch(char[] data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the number of values in this batch.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the packed characters of all values. The array is shared, not copied: callers must not modify it, and
+     * it may be longer than {@link #end(int) end(size() - 1)}.
+     */
+    public char[] data() {
+        return data;
+    }
+
+    /**
+     * Returns the index in {@link #data()} of the first character of value {@code index}.
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    /**
+     * Returns the index in {@link #data()} just past the last character of value {@code index}.
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return offsets[index + 1];
+    }
+
+    /**
+     * Returns the length of value {@code index}.
+     */
+    public int length(int index) {
+        checkIndex(index);
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Returns value {@code index} as a newly created {@link String}.
+     */
+    public String get(int index) {
+        checkIndex(index);
+        return new String(data, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    /**
+     * Returns a read-only view of value {@code index} that shares this batch's characters.
+     */
+    public CharSequence view(int index) {
+        checkIndex(index);
+        return CharBuffer.wrap(data, offsets[index], offsets[index + 1] - offsets[index]).asReadOnlyBuffer();
+    }
+
+    /**
+     * Appends value {@code index} to {@code out} without creating a {@link String}.
+     *
+     * @throws IOException If {@code out} fails to append.
+     */
+    public void appendTo(int index, Appendable out) throws IOException {
+        checkIndex(index);
+        int end = offsets[index + 1];
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(data, offsets[index], end - offsets[index]);
+        } else {
+            for (int i = offsets[index]; i < end; i++) {
+                out.append(data[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a list view of this batch whose elements are created on access.
+     */
+    public List<String> asList() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return GeneratedBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return GeneratedBatch.this.size();
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + " outside batch of size " + size());
+        }
+    }
+}
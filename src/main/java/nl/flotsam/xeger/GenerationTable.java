@@ -0,0 +1,616 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Immutable, array-based form of a brics {@link Automaton}, compiled once so that generation can walk it without
+ * allocating.
+ *
+ * <p>States are numbered from 0 (the initial state) in breadth-first order over the sorted transitions. The outgoing
+ * transitions of state {@code s} occupy the index range [{@code transitionStart[s]}, {@code transitionStart[s + 1]})
+ * of the per-transition arrays (compressed sparse row layout). The automaton is intersected with the
+ * {@link CharacterSet} before it is laid out, so every transition lies within the set and leads to a state from
+ * which an accept state can be reached.
+ *
+ * <p>The weighted choice between the transitions of a state is precomputed as a Walker/Vose alias table in exact
+ * integer arithmetic, so {@link #pick(int, Random)} takes constant time however many transitions a state has.
+ */
+final class GenerationTable {
+
+    final int stateCount;
+    final boolean[] accept;
+    final int[] transitionStart;
+    final char[] min;
+    final char[] max;
+    final int[] dest;
+
+    /**
+     * Running total of the transition weights (number of allowed characters) within each state, so the last entry
+     * of a state's range holds its total weight.
+     */
+    final int[] cumulativeWeight;
+
+    /**
+     * Alias table: column {@code i} of a state keeps transition {@code i} when a draw in [0, total weight) falls
+     * below {@code aliasThreshold[i]}, and otherwise yields transition {@code alias[i]}.
+     */
+    final int[] aliasThreshold;
+    final int[] alias;
+
+    /**
+     * Length of the shortest string leading from each state to an accept state, or {@link #UNREACHABLE} if there is
+     * none (a dead state).
+     */
+    final int[] distance;
+
+    /**
+     * Per state, the transition whose destination is closest to an accept state (the first one on a tie), so that
+     * following it from a non-accepting state completes a match in as few characters as possible; -1 if no
+     * transition leads to a live state.
+     */
+    final int[] shortest;
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** Reachable lengths, computed on first use and recomputed only when a larger cap is needed. */
+    private volatile LengthTable lengths;
+
+    /** Path counts for uniform sampling, computed on first use and recomputed only when a larger cap is needed. */
+    private volatile PathCountTable pathCounts;
+
+    /** Bytecode-specialized walk, built on first use; <code>null</code> if this table cannot be specialized. */
+    private volatile CompiledWalk compiledWalk;
+
+    /** Whether specializing has been tried; set after {@link #compiledWalk}, so its value is then final. */
+    private volatile boolean specializationTried;
+
+    /** Length of the longest match, -1 for an infinite language, or {@link #UNKNOWN} until first computed. */
+    private volatile int longestMatch = UNKNOWN;
+
+    private static final int UNKNOWN = -2;
+
+    private GenerationTable(boolean[] accept, int[] transitionStart, char[] min, char[] max, int[] dest,
+                            int[] cumulativeWeight) {
+        this.stateCount = accept.length;
+        this.accept = accept;
+        this.transitionStart = transitionStart;
+        this.min = min;
+        this.max = max;
+        this.dest = dest;
+        this.cumulativeWeight = cumulativeWeight;
+        this.aliasThreshold = new int[dest.length];
+        this.alias = new int[dest.length];
+        for (int s = 0; s < stateCount; s++) {
+            buildAliasTable(s);
+        }
+        this.distance = distancesToAccept();
+        this.shortest = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            int best = -1;
+            for (int i = transitionStart[s]; i < transitionStart[s + 1]; i++) {
+                if (distance[dest[i]] != UNREACHABLE && (best < 0 || distance[dest[i]] < distance[dest[best]])) {
+                    best = i;
+                }
+            }
+            shortest[s] = best;
+        }
+    }
+
+    /**
+     * Compiles the given regular expression, expanding shorthand character classes first.
+     *
+     * @throws IllegalArgumentException If the regular expression is invalid, or none of its matches consists only
+     *                                  of characters in the set.
+     */
+    static GenerationTable compile(String regex, CharacterSet characterSet) {
+        return compile(regex, characterSet, 0, 0);
+    }
+
+    /**
+     * Same as {@link #compile(String, CharacterSet)}, within a budget of deterministic states and time (0 for no
+     * limit): with either limit set, the automaton is built and determinized by {@link Determinizer} rather than
+     * brics.
+     *
+     * @throws PatternTooComplexException If the budget runs out.
+     */
+    static GenerationTable compile(String regex, CharacterSet characterSet, int maxStates, long timeoutMillis) {
+        long start = XegerMetrics.ENABLED || timeoutMillis > 0 ? System.nanoTime() : 0;
+        Automaton automaton = toAutomaton(regex, characterSet, maxStates, timeoutMillis, start);
+        GenerationTable table = automaton.isEmpty() ? null : build(automaton);
+        if (XegerMetrics.ENABLED) {
+            XegerMetrics.COMPILE_TIME.record(System.nanoTime() - start);
+        }
+        if (table == null) {
+            if (XegerMetrics.ENABLED && !characterSet.equals(CharacterSet.UNICODE)) {
+                XegerMetrics.CHARSET_DEAD_ENDS.increment();
+            }
+            throw new IllegalArgumentException("No string matching " + regex + " consists only of characters in "
+                    + characterSet);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the minimal automaton of the given regular expression, restricted to strings of characters in the
+     * given set, without building a table from it. No string matches if the result {@link Automaton#isEmpty()}.
+     *
+     * @param maxStates     Maximum number of deterministic states, or 0 for no limit.
+     * @param timeoutMillis Maximum compile time, or 0 for no limit.
+     * @param start         Start of the compilation, from {@link System#nanoTime()}; only used with a timeout.
+     * @throws IllegalArgumentException   If the regular expression is invalid.
+     * @throws PatternTooComplexException If the budget runs out.
+     */
+    static Automaton toAutomaton(String regex, CharacterSet characterSet, int maxStates, long timeoutMillis,
+                                 long start) {
+        RegExp regExp = new RegExp(XegerUtils.expandShorthandClasses(regex));
+        Automaton automaton;
+        if (maxStates > 0 || timeoutMillis > 0) {
+            Determinizer determinizer = new Determinizer(regex, maxStates, timeoutMillis, start);
+            automaton = determinizer.determinize(determinizer.nondeterministic(regExp));
+            automaton.minimize();
+        } else {
+            automaton = regExp.toAutomaton();
+        }
+        return restrict(automaton, characterSet);
+    }
+
+    /**
+     * Compiles the given automaton, restricted to strings of characters in the given set.
+     */
+    static GenerationTable compile(Automaton automaton, CharacterSet characterSet) {
+        return build(restrict(automaton, characterSet));
+    }
+
+    /**
+     * Intersects the automaton with the automaton of the set and minimizes it, which also removes the states that
+     * became dead.
+     */
+    private static Automaton restrict(Automaton automaton, CharacterSet characterSet) {
+        if (!characterSet.equals(CharacterSet.UNICODE)) {
+            automaton = automaton.intersection(characterSet.toAutomaton());
+            automaton.minimize();
+        }
+        return automaton;
+    }
+
+    /**
+     * Numbers the states of a minimal automaton breadth-first and lays out their sorted transitions.
+     */
+    private static GenerationTable build(Automaton automaton) {
+        Map<State, Integer> ids = new HashMap<State, Integer>();
+        List<State> states = new ArrayList<State>();
+        List<List<Transition>> sortedTransitions = new ArrayList<List<Transition>>();
+        Deque<State> queue = new ArrayDeque<State>();
+        State initial = automaton.getInitialState();
+        ids.put(initial, 0);
+        queue.add(initial);
+        int transitionCount = 0;
+        while (!queue.isEmpty()) {
+            State state = queue.remove();
+            List<Transition> transitions = state.getSortedTransitions(false);
+            states.add(state);
+            sortedTransitions.add(transitions);
+            transitionCount += transitions.size();
+            for (Transition transition : transitions) {
+                State target = transition.getDest();
+                if (!ids.containsKey(target)) {
+                    ids.put(target, ids.size());
+                    queue.add(target);
+                }
+            }
+        }
+
+        int stateCount = states.size();
+        boolean[] accept = new boolean[stateCount];
+        int[] transitionStart = new int[stateCount + 1];
+        char[] min = new char[transitionCount];
+        char[] max = new char[transitionCount];
+        int[] dest = new int[transitionCount];
+        int[] cumulativeWeight = new int[transitionCount];
+        int index = 0;
+        for (int s = 0; s < stateCount; s++) {
+            accept[s] = states.get(s).isAccept();
+            transitionStart[s] = index;
+            int totalWeight = 0;
+            for (Transition t : sortedTransitions.get(s)) {
+                min[index] = t.getMin();
+                max[index] = t.getMax();
+                dest[index] = ids.get(t.getDest());
+                totalWeight += max[index] - min[index] + 1;
+                cumulativeWeight[index] = totalWeight;
+                index++;
+            }
+        }
+        transitionStart[stateCount] = index;
+        return new GenerationTable(accept, transitionStart, min, max, dest, cumulativeWeight);
+    }
+
+    /**
+     * Writes the structure of this table: state and transition counts, accept flags, transition offsets, ranges and
+     * destinations. Everything derived from these (weights, alias tables, distances) is rebuilt by {@link #read}.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(stateCount);
+        out.writeInt(dest.length);
+        for (int s = 0; s < stateCount; s++) {
+            out.writeByte(accept[s] ? 1 : 0);
+        }
+        for (int s = 0; s <= stateCount; s++) {
+            out.writeInt(transitionStart[s]);
+        }
+        for (int t = 0; t < dest.length; t++) {
+            out.writeChar(min[t]);
+            out.writeChar(max[t]);
+            out.writeInt(dest[t]);
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #write}, starting at the current position of {@code in} and leaving it just
+     * past the table.
+     *
+     * @throws IllegalArgumentException If the data does not describe a valid table.
+     */
+    static GenerationTable read(ByteBuffer in) {
+        int stateCount = in.getInt();
+        int transitionCount = in.getInt();
+        if (stateCount < 1 || transitionCount < 0) {
+            throw new IllegalArgumentException("Corrupt table: " + stateCount + " states, "
+                    + transitionCount + " transitions");
+        }
+        boolean[] accept = new boolean[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            accept[s] = in.get() != 0;
+        }
+        int[] transitionStart = new int[stateCount + 1];
+        for (int s = 0; s <= stateCount; s++) {
+            transitionStart[s] = in.getInt();
+            if (transitionStart[s] < (s == 0 ? 0 : transitionStart[s - 1]) || transitionStart[s] > transitionCount) {
+                throw new IllegalArgumentException("Corrupt table: bad transition offset of state " + s);
+            }
+        }
+        if (transitionStart[0] != 0 || transitionStart[stateCount] != transitionCount) {
+            throw new IllegalArgumentException("Corrupt table: transition offsets do not cover all transitions");
+        }
+        char[] min = new char[transitionCount];
+        char[] max = new char[transitionCount];
+        int[] dest = new int[transitionCount];
+        int[] cumulativeWeight = new int[transitionCount];
+        for (int s = 0; s < stateCount; s++) {
+            int totalWeight = 0;
+            for (int t = transitionStart[s]; t < transitionStart[s + 1]; t++) {
+                min[t] = in.getChar();
+                max[t] = in.getChar();
+                dest[t] = in.getInt();
+                if (min[t] > max[t] || dest[t] < 0 || dest[t] >= stateCount) {
+                    throw new IllegalArgumentException("Corrupt table: bad transition " + t);
+                }
+                totalWeight += max[t] - min[t] + 1;
+                cumulativeWeight[t] = totalWeight;
+            }
+        }
+        return new GenerationTable(accept, transitionStart, min, max, dest, cumulativeWeight);
+    }
+
+    /**
+     * Picks one of the transitions leaving {@code state} with probability proportional to its weight, returning its
+     * index. The state must have at least one transition.
+     */
+    int pick(int state, Random random) {
+        int from = transitionStart[state];
+        int n = transitionStart[state + 1] - from;
+        if (n == 1) {
+            return from;
+        }
+        int total = totalWeight(state);
+        int column;
+        int draw;
+        if ((long) n * total <= Integer.MAX_VALUE) {
+            // One draw covers both the column and the position within it.
+            int outcome = random.nextInt(n * total);
+            column = outcome / total;
+            draw = outcome - column * total;
+        } else {
+            column = random.nextInt(n);
+            draw = random.nextInt(total);
+        }
+        int index = from + column;
+        return draw < aliasThreshold[index] ? index : alias[index];
+    }
+
+    /**
+     * Returns the reachable-length table of this automaton, covering at least lengths 0..{@code cap}.
+     */
+    LengthTable lengths(int cap) {
+        LengthTable current = lengths;
+        if (current == null || current.cap < cap) {
+            current = LengthTable.compute(this, cap);
+            lengths = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the path-count table of this automaton, covering at least lengths 0..{@code cap}.
+     */
+    PathCountTable pathCounts(int cap) {
+        PathCountTable current = pathCounts;
+        if (current == null || current.cap < cap) {
+            current = PathCountTable.compute(this, cap);
+            pathCounts = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the walk of this automaton specialized into bytecode by {@link WalkCompiler}, or <code>null</code> if
+     * the automaton is too large for that, or ASM is not available.
+     */
+    CompiledWalk compiledWalk() {
+        if (!specializationTried) {
+            CompiledWalk current;
+            try {
+                current = WalkCompiler.compile(this);
+            } catch (LinkageError e) {
+                // ASM, an optional dependency, is missing.
+                current = null;
+            }
+            compiledWalk = current;
+            specializationTried = true;
+        }
+        return compiledWalk;
+    }
+
+    /**
+     * Returns the length of the longest string accepted from the initial state, or -1 if infinitely many strings
+     * are accepted. An empty language has a longest match of 0.
+     */
+    int longestMatch() {
+        int longest = longestMatch;
+        if (longest == UNKNOWN) {
+            longest = computeLongestMatch();
+            longestMatch = longest;
+        }
+        return longest;
+    }
+
+    /**
+     * Finds the longest path to an accept state with an iterative depth-first search over the live states (those
+     * at a finite {@link #distance} from an accept state); running into a live state that is still on the search
+     * path means the language is infinite.
+     */
+    private int computeLongestMatch() {
+        if (distance[0] == UNREACHABLE) {
+            return 0;
+        }
+        int[] longest = new int[stateCount];
+        byte[] color = new byte[stateCount]; // 0: unvisited, 1: on the search path, 2: done
+        int[] stack = new int[stateCount];
+        int[] next = new int[stateCount];
+        int depth = 0;
+        stack[0] = 0;
+        next[0] = transitionStart[0];
+        color[0] = 1;
+        longest[0] = accept[0] ? 0 : -1;
+        while (depth >= 0) {
+            int state = stack[depth];
+            if (next[depth] < transitionStart[state + 1]) {
+                int target = dest[next[depth]++];
+                if (distance[target] == UNREACHABLE) {
+                    continue;
+                }
+                if (color[target] == 1) {
+                    return -1;
+                }
+                if (color[target] == 0) {
+                    color[target] = 1;
+                    longest[target] = accept[target] ? 0 : -1;
+                    stack[++depth] = target;
+                    next[depth] = transitionStart[target];
+                } else {
+                    longest[state] = Math.max(longest[state], longest[target] + 1);
+                }
+            } else {
+                color[state] = 2;
+                if (--depth >= 0) {
+                    int parent = stack[depth];
+                    longest[parent] = Math.max(longest[parent], longest[state] + 1);
+                }
+            }
+        }
+        return longest[0];
+    }
+
+    /**
+     * Returns the number of strings accepted from the initial state, or <code>null</code> if infinitely many are.
+     *
+     * <p>Counts paths in a single pass over the live states in depth-first post-order, where every state comes after
+     * all states it leads to. The count of a state is dropped once every transition into it has been counted, so
+     * languages of long strings, with counts of many digits, keep only a frontier of counts in memory.
+     */
+    BigInteger languageSize() {
+        if (longestMatch() < 0) {
+            return null;
+        }
+        if (distance[0] == UNREACHABLE) {
+            return BigInteger.ZERO;
+        }
+        int[] order = new int[stateCount];
+        int ordered = 0;
+        boolean[] visited = new boolean[stateCount];
+        int[] stack = new int[stateCount];
+        int[] next = new int[stateCount];
+        int depth = 0;
+        stack[0] = 0;
+        next[0] = transitionStart[0];
+        visited[0] = true;
+        while (depth >= 0) {
+            int state = stack[depth];
+            if (next[depth] < transitionStart[state + 1]) {
+                int target = dest[next[depth]++];
+                if (distance[target] != UNREACHABLE && !visited[target]) {
+                    visited[target] = true;
+                    stack[++depth] = target;
+                    next[depth] = transitionStart[target];
+                }
+            } else {
+                order[ordered++] = state;
+                depth--;
+            }
+        }
+        int[] incoming = new int[stateCount];
+        for (int i = 0; i < ordered; i++) {
+            for (int t = transitionStart[order[i]]; t < transitionStart[order[i] + 1]; t++) {
+                incoming[dest[t]]++;
+            }
+        }
+        BigInteger[] counts = new BigInteger[stateCount];
+        for (int i = 0; i < ordered; i++) {
+            int state = order[i];
+            BigInteger count = accept[state] ? BigInteger.ONE : BigInteger.ZERO;
+            for (int t = transitionStart[state]; t < transitionStart[state + 1]; t++) {
+                int target = dest[t];
+                if (distance[target] != UNREACHABLE) {
+                    count = count.add(counts[target].multiply(BigInteger.valueOf(weight(t))));
+                }
+                if (--incoming[target] == 0) {
+                    counts[target] = null;
+                }
+            }
+            counts[state] = count;
+        }
+        return counts[0];
+    }
+
+    /**
+     * Computes the distance of every state to the nearest accept state with a breadth-first search from the accept
+     * states over the reversed transitions.
+     */
+    private int[] distancesToAccept() {
+        int[] reverseStart = new int[stateCount + 1];
+        for (int t = 0; t < dest.length; t++) {
+            reverseStart[dest[t] + 1]++;
+        }
+        for (int s = 0; s < stateCount; s++) {
+            reverseStart[s + 1] += reverseStart[s];
+        }
+        int[] source = new int[dest.length];
+        int[] fill = Arrays.copyOf(reverseStart, stateCount);
+        for (int s = 0; s < stateCount; s++) {
+            for (int t = transitionStart[s]; t < transitionStart[s + 1]; t++) {
+                source[fill[dest[t]]++] = s;
+            }
+        }
+        int[] distance = new int[stateCount];
+        Arrays.fill(distance, UNREACHABLE);
+        int[] queue = new int[stateCount];
+        int tail = 0;
+        for (int s = 0; s < stateCount; s++) {
+            if (accept[s]) {
+                distance[s] = 0;
+                queue[tail++] = s;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int state = queue[head];
+            for (int i = reverseStart[state]; i < reverseStart[state + 1]; i++) {
+                if (distance[source[i]] == UNREACHABLE) {
+                    distance[source[i]] = distance[state] + 1;
+                    queue[tail++] = source[i];
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the weight of a transition: the number of characters it allows.
+     */
+    int weight(int transition) {
+        return max[transition] - min[transition] + 1;
+    }
+
+    /**
+     * Fills in the alias table of one state using Vose's method. Weights are scaled by the number of transitions
+     * {@code n} so that every column holds exactly the state's total weight {@code W}, keeping the arithmetic
+     * exact: transition {@code i} ends up owning {@code weight(i) * n} of the {@code n * W} equally likely outcomes.
+     */
+    private void buildAliasTable(int state) {
+        int from = transitionStart[state];
+        int n = transitionStart[state + 1] - from;
+        int total = totalWeight(state);
+        long[] scaled = new long[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int k = 0; k < n; k++) {
+            scaled[k] = (long) weight(from + k) * n;
+            if (scaled[k] < total) {
+                small[smallCount++] = k;
+            } else {
+                large[largeCount++] = k;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            aliasThreshold[from + less] = (int) scaled[less];
+            alias[from + less] = from + more;
+            scaled[more] -= total - scaled[less];
+            if (scaled[more] < total) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left fills its column exactly.
+        while (largeCount > 0) {
+            int k = large[--largeCount];
+            aliasThreshold[from + k] = total;
+            alias[from + k] = from + k;
+        }
+    }
+
+    /**
+     * Returns the sum of the weights of all transitions leaving {@code state}, or 0 if there are none.
+     */
+    int totalWeight(int state) {
+        int end = transitionStart[state + 1];
+        return end == transitionStart[state] ? 0 : cumulativeWeight[end - 1];
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Demand-driven generation behind {@link XegerPublisher} and its {@code java.util.concurrent.Flow} counterpart,
+ * independent of either API: subclasses only deliver the signals.
+ *
+ * <p>Values are generated on the executor in batches of at most the outstanding demand (and at most the batch size),
+ * so no more values are ever held than were requested. Signals are serialized by a work-in-progress counter: whoever
+ * raises it from zero schedules a drain, and the drain runs until it has seen every increment.
+ */
+abstract class GeneratorSubscription {
+
+    private final XegerPattern pattern;
+    private final Random random;
+    private final Executor executor;
+    private final int batchSize;
+
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    GeneratorSubscription(XegerPattern pattern, Random random, Executor executor, int batchSize) {
+        this.pattern = pattern;
+        this.random = random;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    abstract void onNext(String value);
+
+    abstract void onError(Throwable error);
+
+    /**
+     * Adds to the demand; a non-positive {@code n} cancels the subscription with an
+     * {@link IllegalArgumentException}, as Reactive Streams rule 3.9 requires.
+     */
+    public void request(long n) {
+        if (n <= 0) {
+            error = new IllegalArgumentException("Rule 3.9: request must be positive: " + n);
+        } else {
+            long current;
+            do {
+                current = demand.get();
+            } while (current != Long.MAX_VALUE && !demand.compareAndSet(current, addCapped(current, n)));
+        }
+        schedule();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private static long addCapped(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private void schedule() {
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Nothing else is signalling while the counter is raised.
+                cancelled = true;
+                onError(e);
+            }
+        }
+    }
+
+    /**
+     * Delivers at most one batch, then hands over to a fresh task if there is more demand, so that one subscriber
+     * cannot monopolize a thread of a shared executor.
+     */
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            if (cancelled) {
+                return;
+            }
+            if (error != null) {
+                cancelled = true;
+                onError(error);
+                return;
+            }
+            long requested = demand.get();
+            if (requested > 0) {
+                int size = (int) Math.min(requested, batchSize);
+                GeneratedBatch batch;
+                try {
+                    batch = pattern.generateBatch(random, size);
+                } catch (RuntimeException e) {
+                    cancelled = true;
+                    onError(e);
+                    return;
+                }
+                for (int i = 0; i < size; i++) {
+                    if (cancelled) {
+                        return;
+                    }
+                    try {
+                        onNext(batch.get(i));
+                    } catch (RuntimeException e) {
+                        // Rule 2.13: a failing subscriber is considered cancelled.
+                        cancelled = true;
+                        throw e;
+                    }
+                }
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-size);
+                }
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    cancelled = true;
+                    onError(e);
+                }
+                return;
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations in nanoseconds, with one bucket per power of two: bucket {@code b} counts the
+ * durations of {@code b} significant bits, i.e. in [2<sup>b-1</sup>, 2<sup>b</sup>). Recording is one striped
+ * increment, so threads never contend on a single counter; quantiles are accurate to within a factor of two.
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+
+    LatencyHistogram() {
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets[b] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        total.add(value);
+    }
+
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = buckets[b].sum();
+        }
+        return new Snapshot(counts, total.sum());
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        total.reset();
+    }
+
+    /**
+     * Point-in-time copy of the buckets. Under concurrent recording the buckets are read one by one, so the
+     * snapshot may miss some of the durations recorded meanwhile.
+     */
+    static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+
+        Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            this.count = count;
+            this.total = total;
+        }
+
+        long count() {
+            return count;
+        }
+
+        long total() {
+            return total;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given quantile (between 0 and 1), or 0 if nothing was
+         * recorded.
+         */
+        long quantile(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= Math.max(rank, 1)) {
+                    return b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+/**
+ * For every state of a {@link GenerationTable}, the set of lengths (up to a cap) of the strings that lead from that
+ * state to an accept state. Bit {@code r} of a state is set when some path of exactly {@code r} characters ends in
+ * an accept state.
+ *
+ * <p>This is what lets bounded generation only take transitions from which the remaining length window can still
+ * be met, so every value ends up inside the window without rejection sampling.
+ */
+final class LengthTable {
+
+    final int cap;
+    private final int words;
+    private final long[] bits;
+
+    private LengthTable(int cap, int words, long[] bits) {
+        this.cap = cap;
+        this.words = words;
+        this.bits = bits;
+    }
+
+    /**
+     * Computes the reachable lengths 0..{@code cap} of every state, one length at a time: a state can finish in
+     * {@code r} characters if one of its transitions leads to a state that can finish in {@code r - 1}.
+     */
+    static LengthTable compute(GenerationTable table, int cap) {
+        int words = (cap >>> 6) + 1;
+        long[] bits = new long[table.stateCount * words];
+        for (int s = 0; s < table.stateCount; s++) {
+            if (table.accept[s]) {
+                bits[s * words] = 1L;
+            }
+        }
+        for (int r = 1; r <= cap; r++) {
+            int previousWord = (r - 1) >>> 6;
+            long previousBit = 1L << ((r - 1) & 63);
+            for (int s = 0; s < table.stateCount; s++) {
+                for (int i = table.transitionStart[s]; i < table.transitionStart[s + 1]; i++) {
+                    if ((bits[table.dest[i] * words + previousWord] & previousBit) != 0) {
+                        bits[s * words + (r >>> 6)] |= 1L << (r & 63);
+                        break;
+                    }
+                }
+            }
+        }
+        return new LengthTable(cap, words, bits);
+    }
+
+    /**
+     * Returns {@code true} if some string with a length in [{@code minLength}, {@code maxLength}] leads from
+     * {@code state} to an accept state. Lengths beyond the cap are never reported as reachable.
+     */
+    boolean canFinish(int state, int minLength, int maxLength) {
+        int lo = Math.max(minLength, 0);
+        int hi = Math.min(maxLength, cap);
+        if (lo > hi) {
+            return false;
+        }
+        int base = state * words;
+        int first = lo >>> 6;
+        int last = hi >>> 6;
+        for (int w = first; w <= last; w++) {
+            long word = bits[base + w];
+            if (w == first) {
+                word &= -1L << (lo & 63);
+            }
+            if (w == last) {
+                word &= -1L >>> (63 - (hi & 63));
+            }
+            if (word != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
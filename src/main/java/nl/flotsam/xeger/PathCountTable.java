@@ -0,0 +1,351 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * For every state of a {@link GenerationTable} and every length up to a cap, the number of distinct strings of
+ * exactly that length leading from the state to an accept state. These counts make it possible to draw uniformly
+ * from all matching strings within a length window: pick an index below the number of strings in the window and
+ * decode it, one character at a time, in time proportional to its length.
+ *
+ * <p>Counts are kept in {@code long}s as long as they fit; if any count (or the running total of strings up to a
+ * length) overflows, the whole table is computed again with {@link BigInteger}s.
+ *
+ * <p>The table holds {@code (cap + 1) * stateCount} counts, so long bounds on large automata ({@code .{1,5000}} has
+ * 5001 states) would fill the heap. Tables of more than {@link #MAX_CELLS} counts, or whose {@code BigInteger}s add up
+ * to more than {@link #MAX_BIG_BITS} bits, are refused with an {@link IllegalStateException} instead. Merely counting
+ * the language does not need the table, see {@link GenerationTable#languageSize()}.
+ */
+final class PathCountTable {
+
+    /** The most counts a table may hold. */
+    static final long MAX_CELLS = 1 << 23;
+
+    /** The most bits the counts of a table in BigInteger mode may hold together. */
+    static final long MAX_BIG_BITS = 1L << 30;
+
+    final int cap;
+    private final GenerationTable table;
+
+    /** Count of state {@code s} at length {@code r} at index {@code r * stateCount + s}; null in BigInteger mode. */
+    private final long[] counts;
+
+    /** Number of strings of the language of length at most {@code r}; null in BigInteger mode. */
+    private final long[] upTo;
+
+    private final BigInteger[] bigCounts;
+    private final BigInteger[] bigUpTo;
+
+    private PathCountTable(GenerationTable table, int cap, long[] counts, long[] upTo,
+                           BigInteger[] bigCounts, BigInteger[] bigUpTo) {
+        this.table = table;
+        this.cap = cap;
+        this.counts = counts;
+        this.upTo = upTo;
+        this.bigCounts = bigCounts;
+        this.bigUpTo = bigUpTo;
+    }
+
+    /**
+     * Counts the strings of length 0..{@code cap} from every state: a state has one string of length 0 if it
+     * accepts, and for longer lengths {@code r} the sum over its transitions of the transition weight times the
+     * count of the destination at {@code r - 1}.
+     *
+     * @throws IllegalStateException If the table would exceed {@link #MAX_CELLS} or {@link #MAX_BIG_BITS}.
+     */
+    static PathCountTable compute(GenerationTable table, int cap) {
+        long cells = (cap + 1L) * table.stateCount;
+        if (cells > MAX_CELLS) {
+            throw tooLarge(table, cap, cells + " counts, more than the " + MAX_CELLS + " allowed");
+        }
+        try {
+            return computeLong(table, cap);
+        } catch (ArithmeticException overflow) {
+            return computeBig(table, cap);
+        }
+    }
+
+    private static PathCountTable computeLong(GenerationTable table, int cap) {
+        int n = table.stateCount;
+        long[] counts = new long[(cap + 1) * n];
+        long[] upTo = new long[cap + 1];
+        for (int s = 0; s < n; s++) {
+            counts[s] = table.accept[s] ? 1 : 0;
+        }
+        upTo[0] = counts[0];
+        for (int r = 1; r <= cap; r++) {
+            int previous = (r - 1) * n;
+            for (int s = 0; s < n; s++) {
+                long count = 0;
+                for (int i = table.transitionStart[s]; i < table.transitionStart[s + 1]; i++) {
+                    count = Math.addExact(count, Math.multiplyExact(table.weight(i), counts[previous + table.dest[i]]));
+                }
+                counts[r * n + s] = count;
+            }
+            upTo[r] = Math.addExact(upTo[r - 1], counts[r * n]);
+        }
+        return new PathCountTable(table, cap, counts, upTo, null, null);
+    }
+
+    private static PathCountTable computeBig(GenerationTable table, int cap) {
+        int n = table.stateCount;
+        BigInteger[] counts = new BigInteger[(cap + 1) * n];
+        BigInteger[] upTo = new BigInteger[cap + 1];
+        for (int s = 0; s < n; s++) {
+            counts[s] = table.accept[s] ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        upTo[0] = counts[0];
+        long bits = 0;
+        for (int r = 1; r <= cap; r++) {
+            int previous = (r - 1) * n;
+            for (int s = 0; s < n; s++) {
+                BigInteger count = BigInteger.ZERO;
+                for (int i = table.transitionStart[s]; i < table.transitionStart[s + 1]; i++) {
+                    BigInteger next = counts[previous + table.dest[i]];
+                    if (next.signum() != 0) {
+                        count = count.add(next.multiply(BigInteger.valueOf(table.weight(i))));
+                    }
+                }
+                counts[r * n + s] = count;
+                bits += count.bitLength();
+            }
+            if (bits > MAX_BIG_BITS) {
+                throw tooLarge(table, cap, "more than the " + MAX_BIG_BITS + " bits of counts allowed");
+            }
+            upTo[r] = upTo[r - 1].add(counts[r * n]);
+        }
+        return new PathCountTable(table, cap, null, null, counts, upTo);
+    }
+
+    private static IllegalStateException tooLarge(GenerationTable table, int cap, String needed) {
+        return new IllegalStateException("Indexing the strings of up to " + cap + " characters accepted by an "
+                + "automaton of " + table.stateCount + " states needs " + needed);
+    }
+
+    /**
+     * Returns {@code true} if the counts did not fit in a {@code long} and are kept as {@link BigInteger}s.
+     */
+    boolean isBig() {
+        return counts == null;
+    }
+
+    /**
+     * Returns the number of strings of exactly {@code length} characters leading from {@code state} to an accept
+     * state.
+     */
+    BigInteger count(int state, int length) {
+        int index = length * table.stateCount + state;
+        return counts != null ? BigInteger.valueOf(counts[index]) : bigCounts[index];
+    }
+
+    /**
+     * Returns the number of matching strings with a length in [{@code minLength}, {@code maxLength}], both already
+     * within [0, {@code cap}].
+     */
+    BigInteger countBetween(int minLength, int maxLength) {
+        if (minLength > maxLength) {
+            return BigInteger.ZERO;
+        }
+        if (counts != null) {
+            return BigInteger.valueOf(upTo[maxLength] - (minLength == 0 ? 0 : upTo[minLength - 1]));
+        }
+        return minLength == 0 ? bigUpTo[maxLength] : bigUpTo[maxLength].subtract(bigUpTo[minLength - 1]);
+    }
+
+    /**
+     * Writes a string drawn uniformly from all matching strings with a length in [{@code minLength},
+     * {@code maxLength}] into {@code buffer} from {@code offset} on. The bounds must already be within [0,
+     * {@code cap}] and the window must not be empty.
+     *
+     * @return The number of characters written.
+     */
+    int sample(Random random, int minLength, int maxLength, char[] buffer, int offset) {
+        if (counts != null) {
+            long below = minLength == 0 ? 0 : upTo[minLength - 1];
+            return unrank(below + nextLong(random, upTo[maxLength] - below), buffer, offset);
+        }
+        BigInteger below = minLength == 0 ? BigInteger.ZERO : bigUpTo[minLength - 1];
+        return unrank(below.add(nextBigInteger(random, bigUpTo[maxLength].subtract(below))), buffer, offset);
+    }
+
+    /**
+     * Writes the {@code index}-th matching string in shortlex order (shorter strings first, then by character) into
+     * {@code buffer} from {@code offset} on. The index must be below {@link #countBetween countBetween(0, cap)}.
+     *
+     * @return The number of characters written.
+     */
+    int unrank(long index, char[] buffer, int offset) {
+        if (counts == null) {
+            return unrank(BigInteger.valueOf(index), buffer, offset);
+        }
+        int length = 0;
+        while (index >= upTo[length]) {
+            length++;
+        }
+        index -= length == 0 ? 0 : upTo[length - 1];
+        int n = table.stateCount;
+        int state = 0;
+        for (int k = 0; k < length; k++) {
+            int remaining = (length - k - 1) * n;
+            for (int i = table.transitionStart[state]; ; i++) {
+                long next = counts[remaining + table.dest[i]];
+                long block = next * table.weight(i);
+                if (index < block) {
+                    buffer[offset + k] = (char) (table.min[i] + index / next);
+                    index %= next;
+                    state = table.dest[i];
+                    break;
+                }
+                index -= block;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Same as {@link #unrank(long, char[], int)}, for indices that may not fit in a {@code long}.
+     */
+    int unrank(BigInteger index, char[] buffer, int offset) {
+        if (counts != null) {
+            return unrank(index.longValue(), buffer, offset);
+        }
+        int length = 0;
+        while (index.compareTo(bigUpTo[length]) >= 0) {
+            length++;
+        }
+        if (length > 0) {
+            index = index.subtract(bigUpTo[length - 1]);
+        }
+        int n = table.stateCount;
+        int state = 0;
+        for (int k = 0; k < length; k++) {
+            int remaining = (length - k - 1) * n;
+            for (int i = table.transitionStart[state]; ; i++) {
+                BigInteger next = bigCounts[remaining + table.dest[i]];
+                if (next.signum() == 0) {
+                    continue;
+                }
+                BigInteger block = next.multiply(BigInteger.valueOf(table.weight(i)));
+                if (index.compareTo(block) < 0) {
+                    BigInteger[] quotientAndRemainder = index.divideAndRemainder(next);
+                    buffer[offset + k] = (char) (table.min[i] + quotientAndRemainder[0].intValue());
+                    index = quotientAndRemainder[1];
+                    state = table.dest[i];
+                    break;
+                }
+                index = index.subtract(block);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the position of {@code value} in the shortlex order of matching strings, the inverse of
+     * {@link #unrank(BigInteger, char[], int)}, or {@code null} if the value does not match or is longer than the
+     * cap. Transitions are sorted by character, so every transition below the one taken contributes all of its
+     * completions.
+     */
+    BigInteger rank(CharSequence value) {
+        int length = value.length();
+        if (length > cap) {
+            return null;
+        }
+        int n = table.stateCount;
+        int state = 0;
+        if (counts != null) {
+            long index = length == 0 ? 0 : upTo[length - 1];
+            for (int k = 0; k < length; k++) {
+                char c = value.charAt(k);
+                int remaining = (length - k - 1) * n;
+                int taken = -1;
+                for (int i = table.transitionStart[state]; i < table.transitionStart[state + 1]; i++) {
+                    long next = counts[remaining + table.dest[i]];
+                    if (c > table.max[i]) {
+                        index += next * table.weight(i);
+                    } else {
+                        if (c >= table.min[i]) {
+                            index += (c - table.min[i]) * next;
+                            taken = i;
+                        }
+                        break;
+                    }
+                }
+                if (taken < 0) {
+                    return null;
+                }
+                state = table.dest[taken];
+            }
+            return table.accept[state] ? BigInteger.valueOf(index) : null;
+        }
+        BigInteger index = length == 0 ? BigInteger.ZERO : bigUpTo[length - 1];
+        for (int k = 0; k < length; k++) {
+            char c = value.charAt(k);
+            int remaining = (length - k - 1) * n;
+            int taken = -1;
+            for (int i = table.transitionStart[state]; i < table.transitionStart[state + 1]; i++) {
+                BigInteger next = bigCounts[remaining + table.dest[i]];
+                if (c > table.max[i]) {
+                    index = index.add(next.multiply(BigInteger.valueOf(table.weight(i))));
+                } else {
+                    if (c >= table.min[i]) {
+                        index = index.add(next.multiply(BigInteger.valueOf(c - table.min[i])));
+                        taken = i;
+                    }
+                    break;
+                }
+            }
+            if (taken < 0) {
+                return null;
+            }
+            state = table.dest[taken];
+        }
+        return table.accept[state] ? index : null;
+    }
+
+    /**
+     * Returns a uniformly distributed value in [0, {@code bound}), using the same rejection scheme as
+     * {@code SplittableRandom.nextLong(long)}.
+     */
+    static long nextLong(Random random, long bound) {
+        long m = bound - 1;
+        long r = random.nextLong() >>> 1;
+        if ((bound & m) == 0L) {
+            return r & m;
+        }
+        for (long u = r; u - (r = u % bound) + m < 0L; u = random.nextLong() >>> 1) {
+            // retry: u fell into the incomplete last block
+        }
+        return r;
+    }
+
+    /**
+     * Returns a uniformly distributed value in [0, {@code bound}), rejecting draws of {@code bound.bitLength()}
+     * random bits that are not below the bound (at most half of them).
+     */
+    static BigInteger nextBigInteger(Random random, BigInteger bound) {
+        BigInteger r;
+        do {
+            r = new BigInteger(bound.bitLength(), random);
+        } while (r.compareTo(bound) >= 0);
+        return r;
+    }
+}
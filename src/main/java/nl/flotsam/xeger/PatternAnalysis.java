@@ -0,0 +1,146 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import dk.brics.automaton.Automaton;
+
+import java.math.BigInteger;
+
+/**
+ * Structural report of a compiled regular expression, as returned by {@link Xeger#analyze(String)}: the size of its
+ * minimal automaton, the lengths of its matches and how many there are, and how long compiling it took. Useful to
+ * vet patterns from untrusted sources before generating from them.
+ */
+public final class PatternAnalysis {
+
+    private final String regex;
+    private final CharacterSet characterSet;
+    private final int stateCount;
+    private final int transitionCount;
+    private final int minLength;
+    private final int maxLength;
+    private final BigInteger languageSize;
+    private final long compileNanos;
+
+    private PatternAnalysis(String regex, CharacterSet characterSet, int stateCount, int transitionCount,
+                            int minLength, int maxLength, BigInteger languageSize, long compileNanos) {
+        this.regex = regex;
+        this.characterSet = characterSet;
+        this.stateCount = stateCount;
+        this.transitionCount = transitionCount;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.languageSize = languageSize;
+        this.compileNanos = compileNanos;
+    }
+
+    /**
+     * Compiles and analyzes the given regular expression with the character set and compile budget of the given
+     * settings. The pattern cache is bypassed, so the compile time is that of an actual compilation, and analyzing
+     * a pattern does not displace the patterns in use. A pattern none of whose matches consists only of characters
+     * in the set is reported with a language size of 0, rather than rejected as {@link XegerPattern#compile} does.
+     *
+     * @throws IllegalArgumentException   If the regular expression is invalid.
+     * @throws PatternTooComplexException If compiling exceeds the budget of the settings.
+     */
+    static PatternAnalysis analyze(String regex, XegerConfig config) {
+        long start = System.nanoTime();
+        CharacterSet characterSet = config.getCharacterSet();
+        Automaton automaton = GenerationTable.toAutomaton(regex, characterSet, config.getMaxStates(),
+                config.getCompileTimeoutMillis(), start);
+        if (automaton.isEmpty()) {
+            return new PatternAnalysis(regex, characterSet, automaton.getNumberOfStates(), 0, -1, -1, BigInteger.ZERO,
+                    System.nanoTime() - start);
+        }
+        GenerationTable table = GenerationTable.compile(automaton, CharacterSet.UNICODE);
+        return new PatternAnalysis(regex, characterSet, table.stateCount, table.dest.length, table.distance[0],
+                table.longestMatch(), table.languageSize(), System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the regular expression analyzed.
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * Returns the character set the automaton was restricted to.
+     */
+    public CharacterSet getCharacterSet() {
+        return characterSet;
+    }
+
+    /**
+     * Returns the number of states of the minimal deterministic automaton.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the number of transitions of the minimal deterministic automaton, each covering a range of characters.
+     */
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Returns the length of the shortest matching string, or -1 if no string matches.
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Returns the length of the longest matching string, or -1 if matching strings can be arbitrarily long or no
+     * string matches.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns {@code true} if only finitely many strings match.
+     */
+    public boolean isFinite() {
+        return languageSize != null;
+    }
+
+    /**
+     * Returns the number of matching strings, or <code>null</code> if infinitely many strings match.
+     */
+    public BigInteger getLanguageSize() {
+        return languageSize;
+    }
+
+    /**
+     * Returns the time compiling took, in nanoseconds.
+     */
+    public long getCompileNanos() {
+        return compileNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PatternAnalysis[regex=" + regex + ", states=" + stateCount + ", transitions=" + transitionCount
+                + ", minLength=" + minLength + ", maxLength=" + (isFinite() ? String.valueOf(maxLength) : "infinite")
+                + ", languageSize=" + (isFinite() ? languageSize.toString() : "infinite") + "]";
+    }
+}
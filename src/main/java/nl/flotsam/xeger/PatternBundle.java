@@ -0,0 +1,310 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A file of precompiled patterns, so that a job generating from many patterns does not have to compile all of them
+ * from their regular expressions on every start.
+ *
+ * <p>{@link #write} compiles the patterns once; {@link #load} memory-maps the file and only reads its index, each
+ * pattern being decoded from the mapping on first use. Loaded instances are thread-safe.
+ *
+ * <p>File layout (big-endian), version 1:
+ * <pre>
+ *   header   int magic ("XGB1"), short version, short reserved (0), int pattern count
+ *   entries  per pattern: int range count and the (min, max) chars of its character set, then its generation
+ *            table: int state count, int transition count, a byte accept flag per state, int transition offsets
+ *            (state count + 1), and per transition char min, char max and int destination
+ *   index    per pattern: long entry offset, int UTF-8 length and bytes of the regular expression
+ *   trailer  long index offset
+ * </pre>
+ * Transition weights, alias tables and distances to accept are derived from the ranges when a pattern is decoded.
+ * Bundles are limited to 2 GB.
+ */
+public final class PatternBundle {
+
+    static final int MAGIC = 0x58474231; // "XGB1"
+    static final short VERSION = 1;
+
+    private static final int HEADER_LENGTH = 12;
+
+    private final ByteBuffer buffer;
+    private final XegerConfig config;
+    private final List<String> regexes;
+    private final int[] offsets;
+    private final Map<String, Integer> indices;
+    private final AtomicReferenceArray<XegerPattern> patterns;
+
+    private PatternBundle(ByteBuffer buffer, XegerConfig config, List<String> regexes, int[] offsets) {
+        this.buffer = buffer;
+        this.config = config;
+        this.regexes = regexes;
+        this.offsets = offsets;
+        this.indices = new HashMap<String, Integer>();
+        for (int i = regexes.size() - 1; i >= 0; i--) {
+            indices.put(regexes.get(i), i);
+        }
+        this.patterns = new AtomicReferenceArray<XegerPattern>(regexes.size());
+    }
+
+    /**
+     * Compiles the given regular expressions and writes them to a bundle file, replacing any existing file.
+     *
+     * @param path         The file to write. (Not <code>null</code>.)
+     * @param regexes      The regular expressions. (Not <code>null</code>.)
+     * @param characterSet Restricts generated characters to this set. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If one of the regular expressions is invalid; nothing is written then.
+     */
+    public static void write(Path path, List<String> regexes, CharacterSet characterSet) throws IOException {
+        write(path, regexes, characterSet, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #write(Path, List, CharacterSet)}, failing with an {@link IOException}, and deleting the file,
+     * if the bundle would exceed {@code maxSize} bytes.
+     */
+    static void write(Path path, List<String> regexes, CharacterSet characterSet, long maxSize) throws IOException {
+        assert path != null;
+        assert regexes != null;
+        assert characterSet != null;
+        List<GenerationTable> tables = new ArrayList<GenerationTable>(regexes.size());
+        for (int i = 0; i < regexes.size(); i++) {
+            try {
+                tables.add(GenerationTable.compile(regexes.get(i), characterSet));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Pattern #" + (i + 1) + " (" + regexes.get(i) + "): "
+                        + e.getMessage(), e);
+            }
+        }
+        char[] ranges = characterSet.toRanges();
+        long[] offsets = new long[regexes.size()];
+        boolean written = false;
+        // DataOutputStream.size() saturates at Integer.MAX_VALUE, so offsets are counted here.
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(regexes.size());
+            for (int i = 0; i < tables.size(); i++) {
+                offsets[i] = counter.count;
+                out.writeInt(ranges.length / 2);
+                for (char bound : ranges) {
+                    out.writeChar(bound);
+                }
+                tables.get(i).write(out);
+                checkSize(counter.count, maxSize);
+            }
+            long indexOffset = counter.count;
+            long size = indexOffset + 8;
+            List<byte[]> encoded = new ArrayList<byte[]>(regexes.size());
+            for (String regex : regexes) {
+                byte[] bytes = regex.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                size += 8 + 4 + bytes.length;
+            }
+            checkSize(size, maxSize);
+            for (int i = 0; i < regexes.size(); i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(encoded.get(i).length);
+                out.write(encoded.get(i));
+            }
+            out.writeLong(indexOffset);
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static void checkSize(long size, long maxSize) throws IOException {
+        if (size > maxSize) {
+            throw new IOException("Bundle exceeds " + maxSize + " bytes");
+        }
+    }
+
+    /**
+     * Same as {@link #load(Path, XegerConfig)}, using {@link XegerConfig#defaults()}.
+     */
+    public static PatternBundle load(Path path) throws IOException {
+        return load(path, XegerConfig.defaults());
+    }
+
+    /**
+     * Memory-maps a bundle written by {@link #write} and reads its index. The patterns obtained from it use the
+     * given settings, except for the character set, which is the one they were compiled with.
+     *
+     * @param path   The bundle file. (Not <code>null</code>.)
+     * @param config The generation settings. (Not <code>null</code>.)
+     * @throws IOException If the file cannot be read, or is not a bundle of a supported version.
+     */
+    public static PatternBundle load(Path path, XegerConfig config) throws IOException {
+        assert path != null;
+        assert config != null;
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Bundle exceeds 2 GB: " + path);
+            }
+            if (size < HEADER_LENGTH + 8) {
+                throw new IOException("Not a xeger bundle: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a xeger bundle: " + path);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported bundle version " + buffer.getShort(4) + ": " + path);
+        }
+        int count = buffer.getInt(8);
+        long indexOffset = buffer.getLong(buffer.limit() - 8);
+        if (count < 0 || indexOffset < HEADER_LENGTH || indexOffset > buffer.limit() - 8) {
+            throw new IOException("Corrupt bundle index: " + path);
+        }
+        ByteBuffer index = buffer.duplicate();
+        // Through Buffer: ByteBuffer.position(int) only exists from Java 9 on.
+        ((Buffer) index).position((int) indexOffset);
+        String[] regexes = new String[count];
+        int[] offsets = new int[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                long offset = index.getLong();
+                if (offset < HEADER_LENGTH || offset >= indexOffset) {
+                    throw new IOException("Corrupt bundle index: " + path);
+                }
+                offsets[i] = (int) offset;
+                byte[] regex = new byte[index.getInt()];
+                index.get(regex);
+                regexes[i] = new String(regex, StandardCharsets.UTF_8);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt bundle index: " + path, e);
+        }
+        return new PatternBundle(buffer, config, Collections.unmodifiableList(Arrays.asList(regexes)), offsets);
+    }
+
+    /**
+     * Returns the number of patterns in this bundle.
+     */
+    public int size() {
+        return regexes.size();
+    }
+
+    /**
+     * Returns the regular expressions of this bundle, in the order they were written.
+     */
+    public List<String> getRegexes() {
+        return regexes;
+    }
+
+    /**
+     * Returns the pattern at the given position, decoding it on first use.
+     *
+     * @throws IndexOutOfBoundsException If there is no such position.
+     * @throws IllegalStateException     If the bundle data of the pattern is corrupt.
+     */
+    public XegerPattern pattern(int index) {
+        XegerPattern pattern = patterns.get(index);
+        if (pattern == null) {
+            pattern = decode(index);
+            if (!patterns.compareAndSet(index, null, pattern)) {
+                pattern = patterns.get(index);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Returns the pattern of the given regular expression (the first one, should it occur more than once), decoding
+     * it on first use.
+     *
+     * @throws IllegalArgumentException If the regular expression is not in this bundle.
+     * @throws IllegalStateException    If the bundle data of the pattern is corrupt.
+     */
+    public XegerPattern pattern(String regex) {
+        Integer index = indices.get(regex);
+        if (index == null) {
+            throw new IllegalArgumentException("Not in bundle: " + regex);
+        }
+        return pattern(index);
+    }
+
+    private XegerPattern decode(int index) {
+        ByteBuffer entry = buffer.duplicate();
+        ((Buffer) entry).position(offsets[index]);
+        try {
+            char[] ranges = new char[entry.getInt() * 2];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = entry.getChar();
+            }
+            CharacterSet characterSet = CharacterSet.fromRanges(ranges);
+            GenerationTable table = GenerationTable.read(entry);
+            return XegerPattern.of(regexes.get(index), config.toBuilder().characterSet(characterSet).build(), table);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Corrupt bundle entry #" + (index + 1) + " (" + regexes.get(index) + ")",
+                    e);
+        }
+    }
+
+    /**
+     * Counts the bytes written through it, as a {@code long}.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
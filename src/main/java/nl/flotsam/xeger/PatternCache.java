@@ -0,0 +1,130 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded, thread-safe LRU cache of compiled {@link GenerationTable}s, keyed by regular expression and
+ * {@link CharacterSet}.
+ *
+ * <p>Lookups take a short lock on the access-ordered map; compilation itself happens outside the lock so a slow
+ * pattern never blocks lookups of other patterns. Two threads missing on the same key at the same time may both
+ * compile it, in which case the first table stored wins.
+ */
+final class PatternCache {
+
+    private final int capacity;
+    private final Map<Key, GenerationTable> tables;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    PatternCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.tables = new LinkedHashMap<Key, GenerationTable>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, GenerationTable> eldest) {
+                if (size() > PatternCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled table for the given pattern, compiling and caching it on a miss.
+     *
+     * @throws IllegalArgumentException If the regular expression is invalid.
+     */
+    GenerationTable get(String regex, CharacterSet characterSet) {
+        return get(regex, characterSet, 0, 0);
+    }
+
+    /**
+     * Same as {@link #get(String, CharacterSet)}, compiling on a miss within the given budget (0 for no limit).
+     *
+     * @throws PatternTooComplexException If the budget runs out.
+     */
+    GenerationTable get(String regex, CharacterSet characterSet, int maxStates, long timeoutMillis) {
+        Key key = new Key(regex, characterSet);
+        GenerationTable table;
+        synchronized (tables) {
+            table = tables.get(key);
+        }
+        if (table != null) {
+            hits.increment();
+            return table;
+        }
+        misses.increment();
+        GenerationTable compiled = GenerationTable.compile(regex, characterSet, maxStates, timeoutMillis);
+        synchronized (tables) {
+            table = tables.get(key);
+            if (table == null) {
+                tables.put(key, compiled);
+                table = compiled;
+            }
+        }
+        return table;
+    }
+
+    void clear() {
+        synchronized (tables) {
+            tables.clear();
+        }
+    }
+
+    CacheStats stats() {
+        int size;
+        synchronized (tables) {
+            size = tables.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, capacity);
+    }
+
+    private static final class Key {
+        private final String regex;
+        private final CharacterSet characterSet;
+
+        Key(String regex, CharacterSet characterSet) {
+            this.regex = regex;
+            this.characterSet = characterSet;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key that = (Key) other;
+            return regex.equals(that.regex) && characterSet.equals(that.characterSet);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + characterSet.hashCode();
+        }
+    }
+}
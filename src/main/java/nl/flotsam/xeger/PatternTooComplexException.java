@@ -0,0 +1,77 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+/**
+ * Thrown when compiling a regular expression would exceed the state or time budget set with
+ * {@link XegerConfig.Builder#maxStates(int)} or {@link XegerConfig.Builder#compileTimeoutMillis(long)}. The
+ * compilation is abandoned before it can exhaust the heap.
+ */
+public class PatternTooComplexException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The budget that ran out.
+     */
+    public enum Reason {
+        /** The deterministic automaton needs more states than allowed. */
+        STATES,
+        /** Compilation took longer than allowed. */
+        TIME
+    }
+
+    private final String regex;
+    private final Reason reason;
+    private final int states;
+    private final long elapsedMillis;
+
+    PatternTooComplexException(String regex, Reason reason, int states, long elapsedMillis, String message) {
+        super(message);
+        this.regex = regex;
+        this.reason = reason;
+        this.states = states;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the regular expression being compiled.
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns the number of deterministic states built when compilation was abandoned.
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * Returns the time spent compiling when compilation was abandoned.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A batch of generated records, stored column by column: one {@link GeneratedBatch} per column, as produced by
+ * {@link RecordGenerator#generateBatch(java.util.Random, int)}.
+ */
+public final class RecordBatch {
+
+    private final List<String> names;
+    private final GeneratedBatch[] columns;
+    private final int rowCount;
+
+    RecordBatch(List<String> names, GeneratedBatch[] columns, int rowCount) {
+        this.names = names;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the values of the given column.
+     *
+     * @throws IndexOutOfBoundsException If there is no such column.
+     */
+    public GeneratedBatch getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Returns the value of the given row and column as a newly created {@link String}.
+     *
+     * @throws IndexOutOfBoundsException If there is no such row or column.
+     */
+    public String get(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    /**
+     * Appends the rows of this batch to {@code out} in the given format, one line per row. No header is written.
+     *
+     * @throws IOException If {@code out} fails to append.
+     */
+    public void writeTo(Appendable out, RecordGenerator.Format format) throws IOException {
+        for (int row = 0; row < rowCount; row++) {
+            if (format == RecordGenerator.Format.CSV) {
+                for (int column = 0; column < columns.length; column++) {
+                    if (column > 0) {
+                        out.append(',');
+                    }
+                    GeneratedBatch values = columns[column];
+                    appendCsv(values.data(), values.start(row), values.end(row), out);
+                }
+            } else {
+                out.append('{');
+                for (int column = 0; column < columns.length; column++) {
+                    if (column > 0) {
+                        out.append(',');
+                    }
+                    appendJson(names.get(column), out);
+                    out.append(':');
+                    GeneratedBatch values = columns[column];
+                    appendJson(values.data(), values.start(row), values.end(row), out);
+                }
+                out.append('}');
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Appends a CSV field (RFC 4180): quoted, with quotes doubled, if it contains a separator, quote or line break.
+     */
+    static void appendCsv(char[] data, int from, int to, Appendable out) throws IOException {
+        boolean quote = false;
+        for (int i = from; i < to && !quote; i++) {
+            char c = data[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            append(data, from, to, out);
+            return;
+        }
+        out.append('"');
+        int plain = from;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '"') {
+                append(data, plain, i + 1, out);
+                plain = i;
+            }
+        }
+        append(data, plain, to, out);
+        out.append('"');
+    }
+
+    static void appendJson(String value, Appendable out) throws IOException {
+        char[] data = value.toCharArray();
+        appendJson(data, 0, data.length, out);
+    }
+
+    /**
+     * Appends a JSON string literal. Besides quotes, backslashes and control characters, unpaired surrogates are
+     * escaped too, so the output stays valid in any Unicode encoding.
+     */
+    static void appendJson(char[] data, int from, int to, Appendable out) throws IOException {
+        out.append('"');
+        int plain = from;
+        for (int i = from; i < to; i++) {
+            char c = data[i];
+            if (c >= 0x20 && c != '"' && c != '\\' && !Character.isSurrogate(c)) {
+                continue;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(data[i + 1])) {
+                i++;
+                continue;
+            }
+            append(data, plain, i, out);
+            plain = i + 1;
+            switch (c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    out.append("\\u");
+                    String hex = Integer.toHexString(c);
+                    for (int pad = hex.length(); pad < 4; pad++) {
+                        out.append('0');
+                    }
+                    out.append(hex);
+            }
+        }
+        append(data, plain, to, out);
+        out.append('"');
+    }
+
+    private static void append(char[] data, int from, int to, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(data, from, to - from);
+        } else {
+            for (int i = from; i < to; i++) {
+                out.append(data[i]);
+            }
+        }
+    }
+}
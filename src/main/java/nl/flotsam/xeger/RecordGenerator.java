@@ -0,0 +1,252 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates records whose fields each match the regular expression of their column, for bulk fixture files.
+ *
+ * <p>Each column is compiled once. Records are generated in batches, column by column, into one packed
+ * {@link GeneratedBatch} per column, and formatted straight from those without intermediate strings:
+ * <pre>
+ *     RecordGenerator records = RecordGenerator.builder()
+ *             .column("id", "[A-Z]{3}-[0-9]{6}")
+ *             .column("email", "[a-z]{4,10}@example\\.(com|org)")
+ *             .build();
+ *     try (Writer out = Files.newBufferedWriter(path)) {
+ *         records.write(out, RecordGenerator.Format.CSV, 10_000_000, 42, 8);
+ *     }
+ * </pre>
+ * Instances are immutable and thread-safe.
+ */
+public final class RecordGenerator {
+
+    /**
+     * Output format of {@link #write}. Both write one record per line, ending in {@code '\n'}.
+     */
+    public enum Format {
+        /**
+         * Comma-separated values after a header line of column names, fields quoted as in RFC 4180 when needed.
+         */
+        CSV,
+        /**
+         * One JSON object per line, with the column names as keys.
+         */
+        JSONL
+    }
+
+    /**
+     * Number of records per batch of {@link #write}, each with a randomizer of its own, so that batches can be
+     * generated by any thread and the output for a seed does not depend on the number of threads.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    private final List<String> names;
+    private final XegerPattern[] patterns;
+
+    private RecordGenerator(List<String> names, XegerPattern[] patterns) {
+        this.names = names;
+        this.patterns = patterns;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the column names, in order.
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * Generates {@code rows} records, column by column.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If {@code rows} is negative.
+     */
+    public RecordBatch generateBatch(Random random, int rows) {
+        GeneratedBatch[] columns = new GeneratedBatch[patterns.length];
+        for (int column = 0; column < patterns.length; column++) {
+            columns[column] = patterns[column].generateBatch(random, rows);
+        }
+        return new RecordBatch(names, columns, rows);
+    }
+
+    /**
+     * Writes {@code rows} records to {@code out}, generating batches on {@code threads} threads but writing them in
+     * order. The output only depends on the seed, not on the number of threads. At most two batches per thread are
+     * held in memory at any time.
+     *
+     * @param out The destination, which is not closed. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If {@code rows} is negative or {@code threads} is not positive.
+     * @throws IOException              If {@code out} fails to append.
+     */
+    public void write(Appendable out, Format format, long rows, long seed, int threads) throws IOException {
+        assert out != null;
+        assert format != null;
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative: " + rows);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (format == Format.CSV) {
+            for (int column = 0; column < names.size(); column++) {
+                if (column > 0) {
+                    out.append(',');
+                }
+                char[] name = names.get(column).toCharArray();
+                RecordBatch.appendCsv(name, 0, name.length, out);
+            }
+            out.append('\n');
+        }
+        long batches = (rows + BATCH_SIZE - 1) / BATCH_SIZE;
+        if (threads == 1) {
+            for (long batch = 0; batch < batches; batch++) {
+                out.append(format(batch, rows, seed, format));
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<StringBuilder>> pending = new ArrayDeque<Future<StringBuilder>>();
+            for (long batch = 0; batch < batches; batch++) {
+                final long index = batch;
+                pending.add(executor.submit(() -> format(index, rows, seed, format)));
+                if (pending.size() >= 2 * threads) {
+                    out.append(take(pending));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.append(take(pending));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Same as {@link #write(Appendable, Format, long, long, int)} on one thread, with a seed drawn from the
+     * randomizer supplier of the columns' configuration.
+     */
+    public void write(Appendable out, Format format, long rows) throws IOException {
+        write(out, format, rows, patterns[0].getConfig().getRandomSupplier().get().nextLong(), 1);
+    }
+
+    /**
+     * Generates and formats one batch. Formatting into a builder first keeps the destination to one append per batch.
+     */
+    private StringBuilder format(long batch, long rows, long seed, Format format) throws IOException {
+        Random random = new Random(seed + batch * 0x9E3779B97F4A7C15L);
+        int size = (int) Math.min(BATCH_SIZE, rows - batch * BATCH_SIZE);
+        StringBuilder lines = new StringBuilder();
+        generateBatch(random, size).writeTo(lines, format);
+        return lines;
+    }
+
+    private static StringBuilder take(Deque<Future<StringBuilder>> pending) throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating records", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Builder of {@link RecordGenerator} instances; not thread-safe.
+     */
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<String>();
+        private final List<String> regexes = new ArrayList<String>();
+        private XegerConfig config;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a column.
+         *
+         * @param name  The column name. (Not <code>null</code>.)
+         * @param regex The regular expression its values match. (Not <code>null</code>.)
+         * @throws IllegalArgumentException If there already is a column of that name.
+         */
+        public Builder column(String name, String regex) {
+            assert name != null;
+            assert regex != null;
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            names.add(name);
+            regexes.add(regex);
+            return this;
+        }
+
+        /**
+         * Sets the generation settings of all columns; {@link XegerConfig#defaults()} at the time of
+         * {@link #build()} if not set.
+         *
+         * @param config (Not <code>null</code>.)
+         */
+        public Builder config(XegerConfig config) {
+            assert config != null;
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If there are no columns, or the regular expression of one is invalid.
+         */
+        public RecordGenerator build() {
+            if (names.isEmpty()) {
+                throw new IllegalArgumentException("At least one column is needed");
+            }
+            XegerConfig resolved = config != null ? config : XegerConfig.defaults();
+            XegerPattern[] patterns = new XegerPattern[names.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                try {
+                    patterns[i] = XegerPattern.compile(regexes.get(i), resolved);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Column " + names.get(i) + " (" + regexes.get(i) + "): "
+                            + e.getMessage(), e);
+                }
+            }
+            return new RecordGenerator(Collections.unmodifiableList(new ArrayList<String>(names)), patterns);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} driven by the SplitMix64 algorithm (the one behind {@link java.util.SplittableRandom}), with
+ * plain unsynchronized state that can be cheaply reseeded. Meant to be owned by a single thread, e.g. one per
+ * stream split, and reseeded for every generated value.
+ */
+final class SplitMixRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    SplitMixRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        // Also called by the Random constructor, before this class's fields are initialized.
+        this.state = seed;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state += GOLDEN_GAMMA;
+        return (int) (mix64(state) >>> (64 - bits));
+    }
+
+    /**
+     * Returns the seed of the value at the given position of a sequence: the {@code index}-th output of a
+     * {@link java.util.SplittableRandom} created with {@code seed}. Values seeded this way depend only on the pair
+     * ({@code seed}, {@code index}), not on how the sequence is split up.
+     */
+    static long seedAt(long seed, long index) {
+        return mix64(seed + GOLDEN_GAMMA * (index + 1));
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
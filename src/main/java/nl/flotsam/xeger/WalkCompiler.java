@@ -0,0 +1,297 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns a {@link GenerationTable} into a pattern-specific {@link CompiledWalk}: every state becomes a block of
+ * bytecode with its transition ranges, alias table and distances inlined as constants, and every transition a jump
+ * straight to the block of its destination, so the JIT sees no table lookups and no dispatch on a state variable.
+ *
+ * <p>Each generated class gets a class loader of its own, so it is unloaded together with the table it was built
+ * from. For automata whose walk would not fit in a method the JIT is willing to compile,
+ * {@link #compile(GenerationTable)} returns <code>null</code> and the interpreter is used instead. Requires ASM,
+ * an optional dependency, on the class path.
+ */
+final class WalkCompiler {
+
+    /**
+     * Largest method, in bytes of bytecode, that HotSpot compiles by default ({@code -XX:HugeMethodLimit}). A walk
+     * beyond that would only ever be interpreted, which is slower than the table-driven walk.
+     */
+    static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final String SUPER_NAME = "nl/flotsam/xeger/CompiledWalk";
+    private static final String RANDOM = "java/util/Random";
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    // Local variable slots of the generated walk(char[] buffer, int offset, int limit, Random random, int maxLoops).
+    private static final int BUFFER = 1;
+    private static final int OFFSET = 2;
+    private static final int LIMIT = 3;
+    private static final int RANDOM_ARG = 4;
+    private static final int MAX_LOOPS = 5;
+    private static final int LENGTH = 6;
+    private static final int ITERATIONS = 7;
+    private static final int COLUMN = 8;
+    private static final int DRAW = 9;
+
+    private final GenerationTable table;
+    private final MethodVisitor mv;
+    private final Label[] stateLabels;
+    private final Label[] pickedLabels;
+    private final Label[] emitLabels;
+    private final Label returnLabel = new Label();
+    private final Label deadLabel = new Label();
+
+    private WalkCompiler(GenerationTable table, MethodVisitor mv) {
+        this.table = table;
+        this.mv = mv;
+        this.stateLabels = labels(table.stateCount);
+        this.pickedLabels = labels(table.dest.length);
+        this.emitLabels = labels(table.dest.length);
+    }
+
+    /**
+     * Returns the specialized walk of the given table, or <code>null</code> if it cannot be specialized.
+     */
+    static CompiledWalk compile(GenerationTable table) {
+        String name = "nl/flotsam/xeger/generated/Walk" + COUNTER.incrementAndGet();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null, SUPER_NAME,
+                null);
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, SUPER_NAME, "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "walk", "([CIILjava/util/Random;I)I", null, null);
+        mv.visitCode();
+        Label end = new WalkCompiler(table, mv).emitWalk();
+        if (end.getOffset() > HUGE_METHOD_LIMIT) {
+            return null;
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        byte[] bytes = cw.toByteArray();
+        Loader loader = new Loader(CompiledWalk.class.getClassLoader());
+        try {
+            return (CompiledWalk) loader.define(name.replace('/', '.'), bytes).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate generated walk", e);
+        }
+    }
+
+    /**
+     * Emits the body of the walk, returning a label placed right after it.
+     */
+    private Label emitWalk() {
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, LENGTH);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, ITERATIONS);
+        for (int s = 0; s < table.stateCount; s++) {
+            emitState(s);
+        }
+        mv.visitLabel(returnLabel);
+        mv.visitVarInsn(Opcodes.ILOAD, LENGTH);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(deadLabel);
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalStateException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn("Walk reached a state without a path to an accept state");
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalStateException", "<init>",
+                "(Ljava/lang/String;)V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+        Label end = new Label();
+        mv.visitLabel(end);
+        return end;
+    }
+
+    private void emitState(int s) {
+        int from = table.transitionStart[s];
+        int to = table.transitionStart[s + 1];
+        int shortest = table.shortest[s];
+        // Where the walk continues when no pick can complete a match within the limit.
+        Label escape = table.accept[s] ? returnLabel : shortest >= 0 ? emitLabels[shortest] : deadLabel;
+
+        mv.visitLabel(stateLabels[s]);
+        if (table.accept[s]) {
+            mv.visitVarInsn(Opcodes.ILOAD, LENGTH);
+            mv.visitVarInsn(Opcodes.ILOAD, LIMIT);
+            mv.visitJumpInsn(Opcodes.IF_ICMPEQ, returnLabel);
+            if (shortest < 0) {
+                mv.visitJumpInsn(Opcodes.GOTO, returnLabel);
+                return;
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, RANDOM_ARG);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RANDOM, "nextBoolean", "()Z", false);
+            mv.visitJumpInsn(Opcodes.IFNE, returnLabel);
+            mv.visitVarInsn(Opcodes.ILOAD, ITERATIONS);
+            mv.visitVarInsn(Opcodes.ILOAD, MAX_LOOPS);
+            mv.visitJumpInsn(Opcodes.IF_ICMPGT, returnLabel);
+        } else {
+            // Looped too long: complete the match along the shortest path.
+            mv.visitVarInsn(Opcodes.ILOAD, ITERATIONS);
+            mv.visitVarInsn(Opcodes.ILOAD, MAX_LOOPS);
+            mv.visitJumpInsn(Opcodes.IF_ICMPGT, escape);
+        }
+
+        int n = to - from;
+        if (n == 0) {
+            mv.visitJumpInsn(Opcodes.GOTO, deadLabel);
+            return;
+        }
+        if (n == 1) {
+            mv.visitJumpInsn(Opcodes.GOTO, pickedLabels[from]);
+        } else {
+            emitPick(from, n, table.cumulativeWeight[to - 1]);
+        }
+
+        for (int i = from; i < to; i++) {
+            int distance = table.distance[table.dest[i]];
+            mv.visitLabel(pickedLabels[i]);
+            if (distance != GenerationTable.UNREACHABLE) {
+                // distance < limit - length
+                push(distance);
+                mv.visitVarInsn(Opcodes.ILOAD, LIMIT);
+                mv.visitVarInsn(Opcodes.ILOAD, LENGTH);
+                mv.visitInsn(Opcodes.ISUB);
+                mv.visitJumpInsn(Opcodes.IF_ICMPLT, emitLabels[i]);
+            }
+            mv.visitJumpInsn(Opcodes.GOTO, escape);
+        }
+
+        for (int i = from; i < to; i++) {
+            mv.visitLabel(emitLabels[i]);
+            // buffer[offset + length] = (char) (random.nextInt(max - min + 1) + min)
+            mv.visitVarInsn(Opcodes.ALOAD, BUFFER);
+            mv.visitVarInsn(Opcodes.ILOAD, OFFSET);
+            mv.visitVarInsn(Opcodes.ILOAD, LENGTH);
+            mv.visitInsn(Opcodes.IADD);
+            mv.visitVarInsn(Opcodes.ALOAD, RANDOM_ARG);
+            push(table.max[i] - table.min[i] + 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RANDOM, "nextInt", "(I)I", false);
+            if (table.min[i] != 0) {
+                push(table.min[i]);
+                mv.visitInsn(Opcodes.IADD);
+            }
+            mv.visitInsn(Opcodes.I2C);
+            mv.visitInsn(Opcodes.CASTORE);
+            mv.visitIincInsn(LENGTH, 1);
+            mv.visitIincInsn(ITERATIONS, 1);
+            mv.visitJumpInsn(Opcodes.GOTO, stateLabels[table.dest[i]]);
+        }
+    }
+
+    /**
+     * Emits {@link GenerationTable#pick(int, Random)} for a state with {@code n > 1} transitions, jumping to the
+     * picked label of the chosen transition.
+     */
+    private void emitPick(int from, int n, int total) {
+        if ((long) n * total <= Integer.MAX_VALUE) {
+            // outcome = random.nextInt(n * total); column = outcome / total; draw = outcome - column * total
+            mv.visitVarInsn(Opcodes.ALOAD, RANDOM_ARG);
+            push(n * total);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RANDOM, "nextInt", "(I)I", false);
+            mv.visitVarInsn(Opcodes.ISTORE, DRAW);
+            mv.visitVarInsn(Opcodes.ILOAD, DRAW);
+            push(total);
+            mv.visitInsn(Opcodes.IDIV);
+            mv.visitVarInsn(Opcodes.ISTORE, COLUMN);
+            mv.visitVarInsn(Opcodes.ILOAD, DRAW);
+            mv.visitVarInsn(Opcodes.ILOAD, COLUMN);
+            push(total);
+            mv.visitInsn(Opcodes.IMUL);
+            mv.visitInsn(Opcodes.ISUB);
+            mv.visitVarInsn(Opcodes.ISTORE, DRAW);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, RANDOM_ARG);
+            push(n);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RANDOM, "nextInt", "(I)I", false);
+            mv.visitVarInsn(Opcodes.ISTORE, COLUMN);
+            mv.visitVarInsn(Opcodes.ALOAD, RANDOM_ARG);
+            push(total);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RANDOM, "nextInt", "(I)I", false);
+            mv.visitVarInsn(Opcodes.ISTORE, DRAW);
+        }
+        Label[] columns = labels(n);
+        mv.visitVarInsn(Opcodes.ILOAD, COLUMN);
+        mv.visitTableSwitchInsn(0, n - 1, deadLabel, columns);
+        for (int c = 0; c < n; c++) {
+            int index = from + c;
+            int threshold = table.aliasThreshold[index];
+            int alias = table.alias[index];
+            mv.visitLabel(columns[c]);
+            if (threshold >= total || alias == index) {
+                mv.visitJumpInsn(Opcodes.GOTO, pickedLabels[index]);
+            } else if (threshold <= 0) {
+                mv.visitJumpInsn(Opcodes.GOTO, pickedLabels[alias]);
+            } else {
+                mv.visitVarInsn(Opcodes.ILOAD, DRAW);
+                push(threshold);
+                mv.visitJumpInsn(Opcodes.IF_ICMPLT, pickedLabels[index]);
+                mv.visitJumpInsn(Opcodes.GOTO, pickedLabels[alias]);
+            }
+        }
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static Label[] labels(int count) {
+        Label[] labels = new Label[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = new Label();
+        }
+        return labels;
+    }
+
+    private static final class Loader extends ClassLoader {
+
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
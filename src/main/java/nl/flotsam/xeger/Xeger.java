@@ -18,41 +18,25 @@
  */
 package nl.flotsam.xeger;
 
-import dk.brics.automaton.Automaton;
-import dk.brics.automaton.State;
-import dk.brics.automaton.Transition;
-import dk.brics.automaton.RegExp;
-
-import java.util.List;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
 import java.util.Random;
 import java.util.stream.Stream;
 
 /**
  * An object that will generate text from a regular expression. In a way, it's the opposite of a regular expression
  * matcher: an instance of this class will produce text that is guaranteed to match the regular expression passed in.
+ *
+ * <p>An instance pairs an immutable {@link XegerPattern} with a randomizer and holds no other state, so it is cheap
+ * to create and safe to share between threads. Threads that should not contend on one randomizer can each call
+ * {@link XegerPattern#generator(Random)} on the same pattern, or pass their own randomizer to
+ * {@link XegerPattern#generate(Random)}.
  */
 public class Xeger {
 
-    private final Automaton automaton;
+    private final XegerPattern pattern;
     private final Random random;
-    private final CharacterSet characterSet;
-
-    private long desiredMinLength=-1;
-    private long desiredMaxLength=-1;
-
-    /**
-     * When traversing cyclic states, after this many iterations the generator will force an escape
-     * by preferring a transition that leads to a different state.
-     */
-    private static final int MAX_LOOPS = 8;
-
-    /**
-     * Hard cap on the total number of characters that can be generated in a single {@link #generate()} call.
-     * Prevents infinite loops caused by degenerate DFA structures (e.g. patterns with unsupported constructs
-     * like boundary matchers that produce all-self-loop states). Configurable via the system property
-     * {@code nl.flotsam.xeger.MAX_GENERATED_LENGTH}. Default is 100.
-     */
-    private static final int MAX_GENERATED_LENGTH = 100;
 
     /**
      * Constructs a new instance with a specific character set constraint.
@@ -68,9 +52,13 @@ public class Xeger {
         assert regex != null;
         assert random != null;
         assert characterSet != null;
-        this.automaton = new RegExp(XegerUtils.expandShorthandClasses(regex)).toAutomaton();
+        this.pattern = XegerPattern.compileUncached(regex, characterSet);
+        this.random = random;
+    }
+
+    Xeger(XegerPattern pattern, Random random) {
+        this.pattern = pattern;
         this.random = random;
-        this.characterSet = characterSet;
     }
 
     /**
@@ -92,182 +80,251 @@ public class Xeger {
     }
 
     /**
-     * Generates a random String that is guaranteed to match the regular expression passed to the constructor.
+     * Returns an instance for the given pattern, reusing the compiled automaton of an earlier call with the same
+     * regular expression and character set if it is still cached. Instances obtained this way share the compiled
+     * automaton but each uses its own randomizer.
+     *
+     * @param regex        The regular expression. (Not <code>null</code>.)
+     * @param random       The randomizer. (Not <code>null</code>.)
+     * @param characterSet Restricts generated characters to this set. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If the regular expression is invalid.
+     * @see XegerPattern#compile(String, CharacterSet)
      */
-    public String generate() {
-        StringBuilder builder = new StringBuilder();
-        generate(builder, automaton.getInitialState());
-        return builder.toString();
+    public static Xeger compile(String regex, Random random, CharacterSet characterSet) {
+        assert random != null;
+        return new Xeger(XegerPattern.compile(regex, characterSet), random);
     }
 
     /**
-     * Generates a random String that is guaranteed to match the regular expression passed to the constructor.
-     * This version does a best effort of making sure that min and max lengths are adhered to. Note with some
-     * regexes this is impossible or unlikely, but it's worth trying.
-     * Note -1 means the value is ignored.
+     * Returns an instance for the given pattern compiled with the given settings, drawing its randomizer from
+     * {@link XegerConfig#getRandomSupplier()}. The compiled automaton is cached as by
+     * {@link #compile(String, Random, CharacterSet)}.
+     *
+     * @param regex  The regular expression. (Not <code>null</code>.)
+     * @param config The generation settings. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If the regular expression is invalid.
      */
-    public String generate(int desiredMinLength, int desiredMaxLength) {
-        this.desiredMinLength=desiredMinLength;
-        this.desiredMaxLength=desiredMaxLength;
-        return generate();
+    public static Xeger compile(String regex, XegerConfig config) {
+        return new Xeger(XegerPattern.compile(regex, config), config.getRandomSupplier().get());
     }
 
     /**
-     * Returns an infinite sequential {@link Stream} of random strings, each guaranteed to match
-     * the regular expression passed to the constructor.
+     * Same as {@link #compile(String, Random, CharacterSet)}, using a freshly created {@link java.util.Random}.
+     */
+    public static Xeger compile(String regex, CharacterSet characterSet) {
+        return compile(regex, new Random(), characterSet);
+    }
+
+    /**
+     * Same as {@link #compile(String, Random, CharacterSet)}, using {@link CharacterSet#UNICODE} and a freshly
+     * created {@link java.util.Random}.
+     */
+    public static Xeger compile(String regex) {
+        return compile(regex, new Random(), CharacterSet.UNICODE);
+    }
+
+    /**
+     * Compiles the given regular expression and reports on the result: automaton size, match lengths, number of
+     * matches and compile time. The pattern cache is neither consulted nor filled.
      *
-     * <p>The stream is lazy — strings are generated on demand. Use {@link Stream#limit(long)} to
-     * obtain a finite number of results:
-     * <pre>
-     *     List&lt;String&gt; samples = new Xeger("[a-z]{5}").stream().limit(100).collect(toList());
-     * </pre>
+     * @param regex The regular expression. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If the regular expression is invalid.
+     */
+    public static PatternAnalysis analyze(String regex) {
+        return analyze(regex, XegerConfig.defaults());
+    }
+
+    /**
+     * Same as {@link #analyze(String)}, compiling with the character set and compile budget of the given settings,
+     * so untrusted patterns can be vetted without risking a state explosion.
      *
-     * @return An infinite stream of matching strings.
+     * @param regex  The regular expression. (Not <code>null</code>.)
+     * @param config The settings. (Not <code>null</code>.)
+     * @throws IllegalArgumentException   If the regular expression is invalid.
+     * @throws PatternTooComplexException If compiling exceeds the budget of the settings.
+     * @see XegerConfig.Builder#maxStates(int)
      */
-    public Stream<String> stream() {
-        return Stream.generate(this::generate);
+    public static PatternAnalysis analyze(String regex, XegerConfig config) {
+        assert regex != null;
+        assert config != null;
+        return PatternAnalysis.analyze(regex, config);
     }
 
     /**
-     * Returns an infinite sequential {@link Stream} of random strings with best-effort length
-     * bounds applied to each generated value.
+     * Memory-maps a bundle of precompiled patterns written by {@link PatternBundle#write}; patterns are decoded on
+     * first use, and {@link XegerPattern#generator(Random)} turns them into generators.
      *
-     * @param desiredMinLength Minimum desired length (-1 to ignore).
-     * @param desiredMaxLength Maximum desired length (-1 to ignore).
-     * @return An infinite stream of matching strings.
+     * @param path The bundle file. (Not <code>null</code>.)
+     * @throws IOException If the file cannot be read, or is not a bundle of a supported version.
+     * @see PatternBundle#load(Path)
      */
-    public Stream<String> stream(int desiredMinLength, int desiredMaxLength) {
-        return Stream.generate(() -> generate(desiredMinLength, desiredMaxLength));
+    public static PatternBundle loadBundle(Path path) throws IOException {
+        return PatternBundle.load(path);
     }
 
-    private void generate(StringBuilder builder, State state) {
-        int iterations = 0;
-        int maxLoops = getMaxLoops();
-        int maxGeneratedLength = getMaxGeneratedLength();
-        State current = state;
+    /**
+     * Same as {@link #loadBundle(Path)}, generating with the given settings; the character set of each pattern stays
+     * the one it was compiled with.
+     */
+    public static PatternBundle loadBundle(Path path, XegerConfig config) throws IOException {
+        return PatternBundle.load(path, config);
+    }
 
-        while (true) {
-            if (builder.length() >= maxGeneratedLength) {
-                return;
-            }
-            List<Transition> transitions = current.getSortedTransitions(false);
-            if (transitions.size() == 0) {
-                assert current.isAccept();
-                return;
-            }
+    /**
+     * Returns the current hit, miss and eviction counters of the cache used by {@link #compile}.
+     */
+    public static CacheStats cacheStats() {
+        return XegerPattern.cacheStats();
+    }
 
-            // Populate weightings based on characters available in each transition
-            // after intersecting with the configured character set.
-            int[] weightings = new int[transitions.size()];
-            int totalWeight = 0;
-            for (int i = 0; i < weightings.length; i++) {
-                Transition t = transitions.get(i);
-                if (characterSet.overlaps(t.getMin(), t.getMax())) {
-                    char lo = characterSet.clampMin(t.getMin());
-                    char hi = characterSet.clampMax(t.getMax());
-                    weightings[i] = hi - lo + 1;
-                } else {
-                    weightings[i] = 0; // transition incompatible with character set
-                }
-                totalWeight += weightings[i];
-            }
+    /**
+     * Drops every compiled pattern held by the cache used by {@link #compile}. Counters are left untouched.
+     */
+    public static void clearCache() {
+        XegerPattern.clearCache();
+    }
 
-            if (totalWeight == 0) {
-                // No transition is compatible with the character set; stop if possible,
-                // otherwise accept a potentially non-matching result rather than looping.
-                return;
-            }
+    /**
+     * Returns the compiled pattern this instance generates from.
+     */
+    public XegerPattern getPattern() {
+        return pattern;
+    }
 
-            int option = XegerUtils.getRandomInt(1, totalWeight, random);
+    /**
+     * Generates a random String that is guaranteed to match the regular expression passed to the constructor.
+     */
+    public String generate() {
+        return pattern.generate(random);
+    }
 
-            if (current.isAccept() && decideWhetherToStop(builder)) {
-                return;
-            }
+    /**
+     * Generates a random String that is guaranteed to match the regular expression passed to the constructor.
+     * The result is between {@code desiredMinLength} and {@code desiredMaxLength} characters long, inclusive; -1
+     * leaves a bound open (the upper bound is always capped by the maximum generated length).
+     *
+     * @throws IllegalArgumentException If no string matching the pattern has a length within the bounds.
+     */
+    public String generate(int desiredMinLength, int desiredMaxLength) {
+        return pattern.generate(random, desiredMinLength, desiredMaxLength);
+    }
 
-            // Find the transition that corresponds to the chosen random value,
-            // skipping transitions with zero weight (outside character set).
-            int discardedWeight = 0;
-            int index = -1;
-            do {
-                index++;
-                discardedWeight += weightings[index];
-            } while (discardedWeight < option);
+    /**
+     * Generates a random String matching the regular expression, every matching string up to the maximum generated
+     * length being equally likely.
+     *
+     * @see XegerPattern#generateUniform(Random)
+     */
+    public String generateUniform() {
+        return pattern.generateUniform(random);
+    }
 
-            if (iterations > maxLoops) {
-                if (current.isAccept()) {
-                    return;
-                }
-                // We have been looping too long on a non-accept state: force forward progress
-                // by preferring a transition that leads to a different (non-current) state.
-                index = escapeIndex(transitions, current);
-            }
+    /**
+     * Generates a random String matching the regular expression, every matching string with a length between
+     * {@code minLength} and {@code maxLength} being equally likely (-1 to ignore).
+     *
+     * @see XegerPattern#generateUniform(Random, int, int)
+     */
+    public String generateUniform(int minLength, int maxLength) {
+        return pattern.generateUniform(random, minLength, maxLength);
+    }
 
-            Transition transition = transitions.get(index);
-            appendChoice(builder, transition);
-            iterations++;
-            current = transition.getDest();
-        }
+    /**
+     * Generates a random value directly into caller-owned storage, without allocating.
+     *
+     * @return The number of characters written.
+     * @see XegerPattern#generateInto(Random, char[], int)
+     */
+    public int generateInto(char[] dest, int offset) {
+        return pattern.generateInto(random, dest, offset);
     }
 
     /**
-     * Selects the index of the first transition that leads to a state different from {@code current}.
-     * This guarantees forward progress when the traversal is stuck in a cycle on a non-accept state.
-     * Falls back to index 0 if every transition is a self-loop (which cannot happen in a valid DFA,
-     * since every reachable state must have a path to an accept state).
+     * Generates a random value into {@code dest} at its current position, advancing the position past the value.
+     *
+     * @return The number of characters written.
+     * @see XegerPattern#generateInto(Random, CharBuffer)
      */
-    private int escapeIndex(List<Transition> transitions, State current) {
-        for (int i = 0; i < transitions.size(); i++) {
-            if (transitions.get(i).getDest() != current) {
-                return i;
-            }
-        }
-        return 0; // fallback: should never be reached for a valid DFA
+    public int generateInto(CharBuffer dest) {
+        return pattern.generateInto(random, dest);
     }
 
+    /**
+     * Generates a random value and appends it to {@code dest}.
+     *
+     * @return The number of characters appended.
+     * @throws IOException If {@code dest} fails to append.
+     * @see XegerPattern#generateInto(Random, Appendable)
+     */
+    public int generateInto(Appendable dest) throws IOException {
+        return pattern.generateInto(random, dest);
+    }
 
-    private void appendChoice(StringBuilder builder, Transition transition) {
-        char lo = characterSet.clampMin(transition.getMin());
-        char hi = characterSet.clampMax(transition.getMax());
-        char c = (char) XegerUtils.getRandomInt(lo, hi, random);
-        builder.append(c);
+    /**
+     * Generates {@code count} random values into one packed character array.
+     *
+     * @see XegerPattern#generateBatch(Random, int)
+     */
+    public GeneratedBatch generateBatch(int count) {
+        return pattern.generateBatch(random, count);
     }
 
-    private boolean decideWhetherToStop(StringBuilder builder) {
-        //Examines the length of the generated string so far (builder.toString()) against
-        //the desiredMin and Max values. If min has not been met then returns false (don't stop)
-        //if max has been met then return true (do stop) if not then do a random.
-        long lengthSoFar = builder.length();
-        if (desiredMaxLength > -1 && desiredMaxLength <= lengthSoFar) {
-            return true;
-        } else if (desiredMinLength > -1 && desiredMinLength > lengthSoFar) {
-            return false;
-        } else {
-            //This is not weighted which means that all values have a 50/50 chance of stopping
-            //at each opportunity.
-            //For example [A-Z]* will be zero or one characters most of the time.
-            return random.nextBoolean();
-        }
+    /**
+     * Returns an infinite sequential {@link Stream} of random strings, each guaranteed to match
+     * the regular expression passed to the constructor.
+     *
+     * <p>The stream is lazy — strings are generated on demand. Use {@link Stream#limit(long)} to
+     * obtain a finite number of results:
+     * <pre>
+     *     List&lt;String&gt; samples = new Xeger("[a-z]{5}").stream().limit(100).collect(toList());
+     * </pre>
+     *
+     * <p>The stream draws a single seed from this instance's randomizer and then splits without sharing state, so
+     * it scales when made parallel (see {@link #parallelStream()}).
+     *
+     * @return An infinite stream of matching strings.
+     */
+    public Stream<String> stream() {
+        return pattern.stream(random.nextLong());
     }
 
-    private int getMaxLoops() {
-        return getIntProperty("nl.flotsam.xeger.MAX_LOOPS", MAX_LOOPS);
+    /**
+     * Returns an infinite sequential {@link Stream} of random strings with length
+     * bounds applied to each generated value.
+     *
+     * @param desiredMinLength Minimum desired length (-1 to ignore).
+     * @param desiredMaxLength Maximum desired length (-1 to ignore).
+     * @return An infinite stream of matching strings.
+     */
+    public Stream<String> stream(int desiredMinLength, int desiredMaxLength) {
+        return pattern.stream(random.nextLong(), desiredMinLength, desiredMaxLength);
     }
 
-    private int getMaxGeneratedLength() {
-        return getIntProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", MAX_GENERATED_LENGTH);
+    /**
+     * Returns an infinite parallel {@link Stream} of random strings; every split generates from its own
+     * {@link java.util.SplittableRandom} fork.
+     */
+    public Stream<String> parallelStream() {
+        return stream().parallel();
     }
 
-    private int getIntProperty(String key, int defaultValue) {
-        String value = System.getProperty(key);
-        if (value != null) {
-            try {
-                return Integer.valueOf(value);
-            } catch (NumberFormatException ignored) {
-                System.err.println("CAUTION: the value you are using for " + key + " is not a valid integer (" +
-                        value + "), now using default: " + defaultValue);
-            }
-        }
-        return defaultValue;
+    /**
+     * Returns a stream of distinct random strings matching the regular expression, seeded from this instance's
+     * randomizer; it ends once every matching string has been produced.
+     *
+     * @see XegerPattern#uniqueStream(long)
+     */
+    public Stream<String> uniqueStream() {
+        return pattern.uniqueStream(random.nextLong());
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns a {@link Stream} of exactly {@code count} random strings that is fully determined by {@code seed}:
+     * the same values come out in the same order regardless of how many threads consume it.
+     *
+     * @see XegerPattern#sizedStream(long, long)
+     */
+    public Stream<String> sizedStream(long count, long seed) {
+        return pattern.sizedStream(count, seed);
+    }
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Immutable generation settings of a {@link XegerPattern}, resolved once when the pattern is compiled rather than on
+ * every generated value.
+ *
+ * <p>{@link #defaults()} and {@link #builder()} take their limits from the system properties
+ * {@code nl.flotsam.xeger.MAX_LOOPS} and {@code nl.flotsam.xeger.MAX_GENERATED_LENGTH}, read at that moment;
+ * anything set on the builder overrides them, so generators in one JVM can use different limits:
+ * <pre>
+ *     XegerConfig config = XegerConfig.builder()
+ *             .maxGeneratedLength(500)
+ *             .characterSet(CharacterSet.PRINTABLE_ASCII)
+ *             .build();
+ *     Xeger xeger = Xeger.compile("[a-z]+(-[a-z]+)*", config);
+ * </pre>
+ */
+public final class XegerConfig {
+
+    /**
+     * How the length of a generated value is decided.
+     */
+    public enum LengthPolicy {
+        /**
+         * Walk the automaton, stopping at each accept state with a 50/50 chance: short values are strongly favoured
+         * (the classic behaviour).
+         */
+        WALK,
+        /**
+         * Draw uniformly from all matching strings within the length bounds: every value is equally likely, so the
+         * longer lengths, having the most values, dominate.
+         */
+        UNIFORM
+    }
+
+    /**
+     * When traversing cyclic states, after this many iterations the generator stops at the next accept state,
+     * completing the match along the shortest path to one. Default of {@code nl.flotsam.xeger.MAX_LOOPS}.
+     */
+    static final int MAX_LOOPS = 8;
+
+    /**
+     * Hard cap on the total number of characters that can be generated in a single call. Generation steers towards
+     * an accept state as the cap gets close, so values always match; patterns whose shortest match is longer than
+     * the cap are rejected with an {@link IllegalArgumentException}. Default of
+     * {@code nl.flotsam.xeger.MAX_GENERATED_LENGTH}.
+     */
+    static final int MAX_GENERATED_LENGTH = 100;
+
+    private final int maxLoops;
+    private final int maxGeneratedLength;
+    private final LengthPolicy lengthPolicy;
+    private final CharacterSet characterSet;
+    private final Supplier<Random> randomSupplier;
+    private final boolean specialized;
+    private final int maxStates;
+    private final long compileTimeoutMillis;
+
+    private XegerConfig(Builder builder) {
+        this.maxLoops = builder.maxLoops;
+        this.maxGeneratedLength = builder.maxGeneratedLength;
+        this.lengthPolicy = builder.lengthPolicy;
+        this.characterSet = builder.characterSet;
+        this.randomSupplier = builder.randomSupplier;
+        this.specialized = builder.specialized;
+        this.maxStates = builder.maxStates;
+        this.compileTimeoutMillis = builder.compileTimeoutMillis;
+    }
+
+    /**
+     * Returns the default settings: limits from the system properties (or their defaults), the {@link
+     * LengthPolicy#WALK} policy, {@link CharacterSet#UNICODE}, and a new {@link Random} per generator.
+     */
+    public static XegerConfig defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Returns a builder starting from {@link #defaults()}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a builder starting from these settings.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public int getMaxLoops() {
+        return maxLoops;
+    }
+
+    public int getMaxGeneratedLength() {
+        return maxGeneratedLength;
+    }
+
+    public LengthPolicy getLengthPolicy() {
+        return lengthPolicy;
+    }
+
+    public CharacterSet getCharacterSet() {
+        return characterSet;
+    }
+
+    /**
+     * Returns the source of the randomizer of every generator created without an explicit one.
+     */
+    public Supplier<Random> getRandomSupplier() {
+        return randomSupplier;
+    }
+
+    /**
+     * Returns whether the walk of a pattern is specialized into bytecode of its own.
+     *
+     * @see Builder#specialized(boolean)
+     */
+    public boolean isSpecialized() {
+        return specialized;
+    }
+
+    /**
+     * Returns the maximum number of automaton states a compilation may build, or 0 for no limit.
+     *
+     * @see Builder#maxStates(int)
+     */
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    /**
+     * Returns the maximum time a compilation may take, in milliseconds, or 0 for no limit.
+     *
+     * @see Builder#compileTimeoutMillis(long)
+     */
+    public long getCompileTimeoutMillis() {
+        return compileTimeoutMillis;
+    }
+
+    /**
+     * Returns whether compilation runs within a state or time budget.
+     */
+    boolean hasCompileBudget() {
+        return maxStates > 0 || compileTimeoutMillis > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "XegerConfig[maxLoops=" + maxLoops + ", maxGeneratedLength=" + maxGeneratedLength
+                + ", lengthPolicy=" + lengthPolicy + ", characterSet=" + characterSet + ", specialized=" + specialized
+                + ", maxStates=" + maxStates + ", compileTimeoutMillis=" + compileTimeoutMillis + "]";
+    }
+
+    static int getIntProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value != null) {
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException ignored) {
+                System.err.println("CAUTION: the value you are using for " + key + " is not a valid integer (" +
+                        value + "), now using default: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Same as {@link #getIntProperty(String, int)}, falling back to the default for values below 1 as well.
+     */
+    static int getPositiveIntProperty(String key, int defaultValue) {
+        int value = getIntProperty(key, defaultValue);
+        if (value < 1) {
+            System.err.println("CAUTION: the value you are using for " + key + " is not positive (" + value
+                    + "), now using default: " + defaultValue);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /**
+     * Builder of {@link XegerConfig} instances; not thread-safe.
+     */
+    public static final class Builder {
+
+        private int maxLoops;
+        private int maxGeneratedLength;
+        private LengthPolicy lengthPolicy = LengthPolicy.WALK;
+        private CharacterSet characterSet = CharacterSet.UNICODE;
+        private Supplier<Random> randomSupplier = Random::new;
+        private boolean specialized;
+        private int maxStates;
+        private long compileTimeoutMillis;
+
+        private Builder() {
+            this.maxLoops = getIntProperty("nl.flotsam.xeger.MAX_LOOPS", MAX_LOOPS);
+            this.maxGeneratedLength = getIntProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", MAX_GENERATED_LENGTH);
+        }
+
+        private Builder(XegerConfig config) {
+            this.maxLoops = config.maxLoops;
+            this.maxGeneratedLength = config.maxGeneratedLength;
+            this.lengthPolicy = config.lengthPolicy;
+            this.characterSet = config.characterSet;
+            this.randomSupplier = config.randomSupplier;
+            this.specialized = config.specialized;
+            this.maxStates = config.maxStates;
+            this.compileTimeoutMillis = config.compileTimeoutMillis;
+        }
+
+        /**
+         * @throws IllegalArgumentException If {@code maxLoops} is negative.
+         */
+        public Builder maxLoops(int maxLoops) {
+            if (maxLoops < 0) {
+                throw new IllegalArgumentException("maxLoops must not be negative: " + maxLoops);
+            }
+            this.maxLoops = maxLoops;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If {@code maxGeneratedLength} is negative.
+         */
+        public Builder maxGeneratedLength(int maxGeneratedLength) {
+            if (maxGeneratedLength < 0) {
+                throw new IllegalArgumentException("maxGeneratedLength must not be negative: " + maxGeneratedLength);
+            }
+            this.maxGeneratedLength = maxGeneratedLength;
+            return this;
+        }
+
+        /**
+         * @param lengthPolicy (Not <code>null</code>.)
+         */
+        public Builder lengthPolicy(LengthPolicy lengthPolicy) {
+            assert lengthPolicy != null;
+            this.lengthPolicy = lengthPolicy;
+            return this;
+        }
+
+        /**
+         * @param characterSet (Not <code>null</code>.)
+         */
+        public Builder characterSet(CharacterSet characterSet) {
+            assert characterSet != null;
+            this.characterSet = characterSet;
+            return this;
+        }
+
+        /**
+         * @param randomSupplier (Not <code>null</code>.)
+         */
+        public Builder randomSupplier(Supplier<Random> randomSupplier) {
+            assert randomSupplier != null;
+            this.randomSupplier = randomSupplier;
+            return this;
+        }
+
+        /**
+         * Enables specializing the walk of each pattern into a class generated at runtime, with a block of bytecode
+         * per automaton state and the character ranges inlined, so the JIT can compile it into straight-line code.
+         * Worth it for patterns used for millions of values; the class is built once per compiled pattern.
+         *
+         * <p>Only the {@link LengthPolicy#WALK} policy without length bounds is specialized, and values are the same
+         * as those of the table-driven walk for the same seed. Automata too large for the JIT to compile, and all
+         * patterns if ASM is not on the class path, keep using the table-driven walk. Disabled by default.
+         */
+        public Builder specialized(boolean specialized) {
+            this.specialized = specialized;
+            return this;
+        }
+
+        /**
+         * Limits the number of states of the deterministic automaton built while compiling, so that patterns whose
+         * automaton explodes, such as {@code (a|b)*a(a|b){25}}, fail with a {@link PatternTooComplexException}
+         * instead of exhausting the heap. The limit applies before minimization. 0 (the default) means no limit.
+         *
+         * <p>Within a budget, determinization is done by xeger itself rather than brics, which has no limits; the
+         * complement and intersection operators ({@code ~} and {@code &}) still determinize their operands
+         * without one. Patterns already in the cache of {@link XegerPattern#compile} are returned as they are.
+         *
+         * @throws IllegalArgumentException If {@code maxStates} is negative.
+         */
+        public Builder maxStates(int maxStates) {
+            if (maxStates < 0) {
+                throw new IllegalArgumentException("maxStates must not be negative: " + maxStates);
+            }
+            this.maxStates = maxStates;
+            return this;
+        }
+
+        /**
+         * Limits the time compiling a pattern may take, failing with a {@link PatternTooComplexException} once it
+         * runs out. The time is checked as each deterministic state is built, see {@link #maxStates(int)}. 0 (the
+         * default) means no limit.
+         *
+         * @throws IllegalArgumentException If {@code compileTimeoutMillis} is negative.
+         */
+        public Builder compileTimeoutMillis(long compileTimeoutMillis) {
+            if (compileTimeoutMillis < 0) {
+                throw new IllegalArgumentException("compileTimeoutMillis must not be negative: "
+                        + compileTimeoutMillis);
+            }
+            this.compileTimeoutMillis = compileTimeoutMillis;
+            return this;
+        }
+
+        public XegerConfig build() {
+            return new XegerConfig(this);
+        }
+    }
+}
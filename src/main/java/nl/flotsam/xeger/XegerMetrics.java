@@ -0,0 +1,258 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Point-in-time snapshot of the generation and compilation counters of this JVM, as returned by
+ * {@link #snapshot()}.
+ *
+ * <p>Counting is off unless the JVM runs with {@code -Dnl.flotsam.xeger.METRICS=true}. The switch is read once, into a
+ * constant, so with counting off the JIT removes the instrumentation entirely. With counting on, each event is one
+ * increment of a striped {@link LongAdder}, and the counters are also published over JMX as
+ * {@value #OBJECT_NAME}.
+ *
+ * <p>Values produced by a walk specialized into bytecode (see {@link XegerConfig.Builder#specialized(boolean)})
+ * count towards the values and characters generated, but not towards truncations and forced escapes.
+ */
+public final class XegerMetrics {
+
+    /**
+     * Name of the MBean registered when counting is on.
+     */
+    public static final String OBJECT_NAME = "nl.flotsam.xeger:type=Metrics";
+
+    static final boolean ENABLED = Boolean.getBoolean("nl.flotsam.xeger.METRICS");
+
+    static final LongAdder VALUES = new LongAdder();
+    static final LongAdder CHARS = new LongAdder();
+    static final LongAdder TRUNCATIONS = new LongAdder();
+    static final LongAdder FORCED_ESCAPES = new LongAdder();
+    static final LongAdder CHARSET_DEAD_ENDS = new LongAdder();
+    static final LatencyHistogram COMPILE_TIME = new LatencyHistogram();
+
+    static {
+        if (ENABLED) {
+            registerMBean();
+        }
+    }
+
+    private final boolean enabled;
+    private final long valuesGenerated;
+    private final long charsGenerated;
+    private final long truncations;
+    private final long forcedEscapes;
+    private final long charsetDeadEnds;
+    private final LatencyHistogram.Snapshot compileTime;
+    private final CacheStats cacheStats;
+
+    private XegerMetrics() {
+        this.enabled = ENABLED;
+        this.valuesGenerated = VALUES.sum();
+        this.charsGenerated = CHARS.sum();
+        this.truncations = TRUNCATIONS.sum();
+        this.forcedEscapes = FORCED_ESCAPES.sum();
+        this.charsetDeadEnds = CHARSET_DEAD_ENDS.sum();
+        this.compileTime = COMPILE_TIME.snapshot();
+        this.cacheStats = XegerPattern.cacheStats();
+    }
+
+    /**
+     * Returns the current counters.
+     */
+    public static XegerMetrics snapshot() {
+        return new XegerMetrics();
+    }
+
+    /**
+     * Sets all counters back to zero, except those of the pattern cache, which are {@link Xeger#cacheStats()}'s.
+     */
+    public static void reset() {
+        VALUES.reset();
+        CHARS.reset();
+        TRUNCATIONS.reset();
+        FORCED_ESCAPES.reset();
+        CHARSET_DEAD_ENDS.reset();
+        COMPILE_TIME.reset();
+    }
+
+    /**
+     * Returns whether counting is on; if not, all counters but those of the pattern cache stay zero.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of values generated.
+     */
+    public long getValuesGenerated() {
+        return valuesGenerated;
+    }
+
+    /**
+     * Returns the total length of the values generated.
+     */
+    public long getCharsGenerated() {
+        return charsGenerated;
+    }
+
+    /**
+     * Returns how often the maximum generated length (or the space available) cut a walk short: the walk stopped at
+     * an accept state, or headed for the nearest one, rather than take the transition it had picked.
+     */
+    public long getTruncations() {
+        return truncations;
+    }
+
+    /**
+     * Returns how many transitions were forced, after the maximum number of loops, along the shortest path to an
+     * accept state.
+     */
+    public long getForcedEscapes() {
+        return forcedEscapes;
+    }
+
+    /**
+     * Returns how many patterns were rejected because none of their matches consists only of characters of the
+     * requested {@link CharacterSet}.
+     */
+    public long getCharsetDeadEnds() {
+        return charsetDeadEnds;
+    }
+
+    /**
+     * Returns the number of regular expressions compiled (cache misses and uncached compilations).
+     */
+    public long getCompilations() {
+        return compileTime.count();
+    }
+
+    /**
+     * Returns the mean compilation time, in nanoseconds.
+     */
+    public double getCompileTimeMeanNanos() {
+        return compileTime.mean();
+    }
+
+    /**
+     * Returns an upper bound of the given quantile (between 0 and 1) of compilation times, in nanoseconds, accurate
+     * to within a factor of two.
+     */
+    public long getCompileTimeQuantileNanos(double quantile) {
+        return compileTime.quantile(quantile);
+    }
+
+    /**
+     * Returns the counters of the compiled-pattern cache, which are kept whether counting is on or not.
+     */
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    @Override
+    public String toString() {
+        return "XegerMetrics[enabled=" + enabled + ", values=" + valuesGenerated + ", chars=" + charsGenerated
+                + ", truncations=" + truncations + ", forcedEscapes=" + forcedEscapes + ", charsetDeadEnds="
+                + charsetDeadEnds + ", compilations=" + getCompilations() + ", " + cacheStats + "]";
+    }
+
+    /**
+     * Registers the MBean, unless already registered.
+     */
+    static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MXBean(), name);
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("CAUTION: could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    private static final class MXBean implements XegerMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getValuesGenerated() {
+            return VALUES.sum();
+        }
+
+        @Override
+        public long getCharsGenerated() {
+            return CHARS.sum();
+        }
+
+        @Override
+        public long getTruncations() {
+            return TRUNCATIONS.sum();
+        }
+
+        @Override
+        public long getForcedEscapes() {
+            return FORCED_ESCAPES.sum();
+        }
+
+        @Override
+        public long getCharsetDeadEnds() {
+            return CHARSET_DEAD_ENDS.sum();
+        }
+
+        @Override
+        public long getCompilations() {
+            return COMPILE_TIME.snapshot().count();
+        }
+
+        @Override
+        public double getCompileTimeMeanMillis() {
+            return COMPILE_TIME.snapshot().mean() / 1e6;
+        }
+
+        @Override
+        public double getCompileTimeP99Millis() {
+            return COMPILE_TIME.snapshot().quantile(0.99) / 1e6;
+        }
+
+        @Override
+        public long getCacheHits() {
+            return XegerPattern.cacheStats().getHits();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return XegerPattern.cacheStats().getMisses();
+        }
+
+        @Override
+        public void reset() {
+            XegerMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+/**
+ * JMX view of {@link XegerMetrics}, registered as {@value XegerMetrics#OBJECT_NAME}. Every attribute reads the
+ * current counters.
+ */
+public interface XegerMetricsMXBean {
+
+    boolean isEnabled();
+
+    long getValuesGenerated();
+
+    long getCharsGenerated();
+
+    long getTruncations();
+
+    long getForcedEscapes();
+
+    long getCharsetDeadEnds();
+
+    long getCompilations();
+
+    double getCompileTimeMeanMillis();
+
+    double getCompileTimeP99Millis();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * Sets all counters of {@link XegerMetrics} back to zero (the cache counters excepted).
+     */
+    void reset();
+}
@@ -0,0 +1,693 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compiled regular expression from which matching text can be generated.
+ *
+ * <p>Instances are immutable and hold no generation state: the randomizer and the desired length bounds are passed
+ * to every call. A single instance can therefore be shared by any number of threads without locking, each thread
+ * supplying its own randomizer (for example {@link java.util.concurrent.ThreadLocalRandom#current()}), or wrapping
+ * one in a lightweight {@link Xeger} via {@link #generator(Random)}.
+ */
+public final class XegerPattern {
+
+    /**
+     * Maximum number of compiled patterns kept by {@link #compile(String, CharacterSet)}. Configurable via the
+     * system property {@code nl.flotsam.xeger.CACHE_SIZE}, read once when this class is loaded; values below 1 are
+     * ignored. Default is 1024.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    private static final PatternCache CACHE =
+            new PatternCache(XegerConfig.getPositiveIntProperty("nl.flotsam.xeger.CACHE_SIZE", CACHE_SIZE));
+
+    /**
+     * Per-thread scratch space for values that are not written straight into caller-owned storage; grown on demand,
+     * never shrunk.
+     */
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[XegerConfig.MAX_GENERATED_LENGTH];
+        }
+    };
+
+    private final String regex;
+    private final XegerConfig config;
+    private final GenerationTable table;
+
+    // Copied out of the configuration for the generation loop.
+    private final int maxLoops;
+    private final int maxGeneratedLength;
+    private final boolean uniform;
+
+    /** The specialized walk, if enabled and available. */
+    private final CompiledWalk walk;
+
+    private XegerPattern(String regex, XegerConfig config, GenerationTable table) {
+        this.regex = regex;
+        this.config = config;
+        this.table = table;
+        this.maxLoops = config.getMaxLoops();
+        this.maxGeneratedLength = config.getMaxGeneratedLength();
+        this.uniform = config.getLengthPolicy() == XegerConfig.LengthPolicy.UNIFORM;
+        this.walk = config.isSpecialized() && !uniform ? table.compiledWalk() : null;
+    }
+
+    /**
+     * Compiles the given regular expression, reusing the result of an earlier compilation of the same regular
+     * expression and character set if it is still cached. Other settings are those of {@link XegerConfig#defaults()}
+     * at the time of the call.
+     *
+     * @param regex        The regular expression. (Not <code>null</code>.)
+     * @param characterSet Restricts generated characters to this set. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If the regular expression is invalid.
+     */
+    public static XegerPattern compile(String regex, CharacterSet characterSet) {
+        assert characterSet != null;
+        return compile(regex, XegerConfig.builder().characterSet(characterSet).build());
+    }
+
+    /**
+     * Compiles the given regular expression with the given settings, reusing the result of an earlier compilation
+     * of the same regular expression and character set if it is still cached.
+     *
+     * @param regex  The regular expression. (Not <code>null</code>.)
+     * @param config The generation settings. (Not <code>null</code>.)
+     * @throws IllegalArgumentException   If the regular expression is invalid.
+     * @throws PatternTooComplexException If compiling exceeds the budget of the settings.
+     */
+    public static XegerPattern compile(String regex, XegerConfig config) {
+        assert regex != null;
+        assert config != null;
+        return new XegerPattern(regex, config, CACHE.get(regex, config.getCharacterSet(), config.getMaxStates(),
+                config.getCompileTimeoutMillis()));
+    }
+
+    /**
+     * Same as {@link #compile(String, CharacterSet)}, using {@link CharacterSet#UNICODE}.
+     */
+    public static XegerPattern compile(String regex) {
+        return compile(regex, CharacterSet.UNICODE);
+    }
+
+    /**
+     * Compiles the given regular expression without consulting the cache.
+     */
+    static XegerPattern compileUncached(String regex, CharacterSet characterSet) {
+        return new XegerPattern(regex, XegerConfig.builder().characterSet(characterSet).build(),
+                GenerationTable.compile(regex, characterSet));
+    }
+
+    /**
+     * Wraps an already compiled table, e.g. one loaded from a {@link PatternBundle}.
+     */
+    static XegerPattern of(String regex, XegerConfig config, GenerationTable table) {
+        return new XegerPattern(regex, config, table);
+    }
+
+    static CacheStats cacheStats() {
+        return CACHE.stats();
+    }
+
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns the regular expression this pattern was compiled from.
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * Returns the character set generated text is restricted to.
+     */
+    public CharacterSet getCharacterSet() {
+        return config.getCharacterSet();
+    }
+
+    /**
+     * Returns the settings this pattern was compiled with.
+     */
+    public XegerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns a generator drawing its randomness from the given randomizer.
+     */
+    public Xeger generator(Random random) {
+        return new Xeger(this, random);
+    }
+
+    /**
+     * Generates a random String that is guaranteed to match this pattern.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     */
+    public String generate(Random random) {
+        return generate(random, -1, -1);
+    }
+
+    /**
+     * Generates a random String that is guaranteed to match this pattern.
+     * The result is between {@code desiredMinLength} and {@code desiredMaxLength} characters long, inclusive; -1
+     * leaves a bound open (the upper bound is always capped by the maximum generated length).
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If no string matching the pattern has a length within the bounds.
+     */
+    public String generate(Random random, int desiredMinLength, int desiredMaxLength) {
+        char[] scratch = scratch(maxGeneratedLength);
+        int length = generate(scratch, 0, maxGeneratedLength, random, desiredMinLength, desiredMaxLength);
+        return new String(scratch, 0, length);
+    }
+
+    /**
+     * Generates a random String matching this pattern, drawn uniformly from all matching strings up to the maximum
+     * generated length: unlike {@link #generate(Random)}, every such string is equally likely. Note that longer
+     * strings then dominate, simply because there are more of them.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If no string matching the pattern is short enough.
+     */
+    public String generateUniform(Random random) {
+        return generateUniform(random, -1, -1);
+    }
+
+    /**
+     * Generates a random String matching this pattern, drawn uniformly from all matching strings between
+     * {@code minLength} and {@code maxLength} characters long, inclusive (-1 leaves a bound open; the upper bound is
+     * always capped by the maximum generated length). Passing the same value twice samples the
+     * strings of exactly that length.
+     *
+     * <p>The number of matching strings per state and remaining length is computed once per pattern and cached, so
+     * each value takes time proportional to its length.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If no string matching the pattern has a length within the bounds.
+     */
+    public String generateUniform(Random random, int minLength, int maxLength) {
+        char[] scratch = scratch(maxGeneratedLength);
+        int length = counted(generateUniform(scratch, 0, maxGeneratedLength, random, minLength, maxLength));
+        return new String(scratch, 0, length);
+    }
+
+    /**
+     * Generates a random value matching this pattern directly into {@code dest}, starting at {@code offset}, without
+     * allocating.
+     *
+     * <p>At most {@code dest.length - offset} characters are written: the space available acts like a lower
+     * maximum generated length, so make sure it can hold the longest value wanted.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @return The number of characters written.
+     * @throws IndexOutOfBoundsException If {@code offset} lies outside {@code dest}.
+     * @throws IllegalArgumentException  If even the shortest matching value does not fit.
+     */
+    public int generateInto(Random random, char[] dest, int offset) {
+        if (offset < 0 || offset > dest.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " outside array of length " + dest.length);
+        }
+        int limit = Math.min(maxGeneratedLength, dest.length - offset);
+        return generate(dest, offset, limit, random, -1, -1);
+    }
+
+    /**
+     * Generates a random value matching this pattern into {@code dest} at its current position, advancing the
+     * position past the value. Array-backed buffers are written in place; at most {@code dest.remaining()}
+     * characters are written.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @return The number of characters written.
+     * @throws java.nio.ReadOnlyBufferException If {@code dest} is read-only.
+     */
+    public int generateInto(Random random, CharBuffer dest) {
+        int limit = Math.min(maxGeneratedLength, dest.remaining());
+        if (dest.hasArray()) {
+            int length = generate(dest.array(), dest.arrayOffset() + dest.position(), limit, random, -1, -1);
+            // Through Buffer: CharBuffer.position(int) only exists from Java 9 on.
+            ((Buffer) dest).position(dest.position() + length);
+            return length;
+        }
+        char[] scratch = scratch(limit);
+        int length = generate(scratch, 0, limit, random, -1, -1);
+        dest.put(scratch, 0, length);
+        return length;
+    }
+
+    /**
+     * Generates a random value matching this pattern and appends it to {@code dest}. {@link StringBuilder} targets
+     * take the whole value at once; other targets receive it one character at a time, so no intermediate
+     * {@link CharSequence} is created.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @return The number of characters appended.
+     * @throws IOException If {@code dest} fails to append.
+     */
+    public int generateInto(Random random, Appendable dest) throws IOException {
+        char[] scratch = scratch(maxGeneratedLength);
+        int length = generate(scratch, 0, maxGeneratedLength, random, -1, -1);
+        if (dest instanceof StringBuilder) {
+            ((StringBuilder) dest).append(scratch, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dest.append(scratch[i]);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Generates {@code count} random values matching this pattern into one packed character array.
+     *
+     * <p>The generation limits are looked up once for the whole batch, and the values share a single backing array
+     * instead of one builder, string and array each, which keeps garbage collection pressure low when building
+     * large in-memory fixture tables.
+     *
+     * @param random The randomizer. (Not <code>null</code>.)
+     * @throws IllegalArgumentException If {@code count} is negative.
+     */
+    public GeneratedBatch generateBatch(Random random, int count) {
+        return generateBatch(random, count, -1, -1);
+    }
+
+    /**
+     * Same as {@link #generateBatch(Random, int)}, with length bounds applied to each generated value
+     * (-1 to ignore).
+     */
+    public GeneratedBatch generateBatch(Random random, int count, int desiredMinLength, int desiredMaxLength) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        int[] offsets = new int[count + 1];
+        char[] data = new char[Math.min(count, 1 << 20) * 16 + maxGeneratedLength];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (data.length - position < maxGeneratedLength) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, position + maxGeneratedLength));
+            }
+            position += generate(data, position, maxGeneratedLength, random, desiredMinLength, desiredMaxLength);
+            offsets[i + 1] = position;
+        }
+        return new GeneratedBatch(data, offsets);
+    }
+
+    /**
+     * Returns an infinite {@link Stream} of random strings matching this pattern, seeded from {@code seed}.
+     *
+     * <p>The stream splits efficiently: in parallel use every split forks its own {@link java.util.SplittableRandom}
+     * rather than contending on a shared randomizer. For a given seed the sequential output is reproducible; in
+     * parallel use the values depend on how the stream was split.
+     */
+    public Stream<String> stream(long seed) {
+        return stream(seed, -1, -1);
+    }
+
+    /**
+     * Same as {@link #stream(long)}, with length bounds applied to each generated value (-1 to ignore).
+     */
+    public Stream<String> stream(long seed, int desiredMinLength, int desiredMaxLength) {
+        return StreamSupport.stream(
+                XegerSpliterator.unsized(this, seed, desiredMinLength, desiredMaxLength), false);
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of exactly {@code count} random strings matching this pattern.
+     *
+     * <p>The value at each position is derived from {@code seed} and that position alone, so the stream produces
+     * the same values in the same order whether it is consumed sequentially or in parallel, on any number of
+     * threads.
+     *
+     * @throws IllegalArgumentException If {@code count} is negative.
+     */
+    public Stream<String> sizedStream(long count, long seed) {
+        return sizedStream(count, seed, -1, -1);
+    }
+
+    /**
+     * Same as {@link #sizedStream(long, long)}, with length bounds applied to each generated value
+     * (-1 to ignore).
+     */
+    public Stream<String> sizedStream(long count, long seed, int desiredMinLength, int desiredMaxLength) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        return StreamSupport.stream(
+                XegerSpliterator.sized(this, count, seed, desiredMinLength, desiredMaxLength), false);
+    }
+
+    /**
+     * Returns {@code true} if only finitely many strings match this pattern, in which case they can be counted,
+     * ranked and enumerated.
+     */
+    public boolean isFinite() {
+        return table.longestMatch() >= 0;
+    }
+
+    /**
+     * Returns the number of strings matching this pattern.
+     *
+     * @throws IllegalStateException If infinitely many strings match.
+     */
+    public BigInteger count() {
+        BigInteger count = table.languageSize();
+        if (count == null) {
+            throw new IllegalStateException("Infinitely many strings match " + regex);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the matching string at position {@code index} in canonical order: shorter strings first, strings of
+     * the same length ordered by character value (shortlex order).
+     *
+     * @param index The position, from 0 (inclusive) to {@link #count()} (exclusive). (Not <code>null</code>.)
+     * @throws IllegalStateException    If infinitely many strings match, or the counts needed to index them would
+     *                                  not fit in memory.
+     * @throws IllegalArgumentException If the index is out of range.
+     */
+    public String unrank(BigInteger index) {
+        assert index != null;
+        PathCountTable counts = finiteCounts();
+        if (index.signum() < 0 || index.compareTo(counts.countBetween(0, counts.cap)) >= 0) {
+            throw new IllegalArgumentException("No string matching " + regex + " at index " + index);
+        }
+        char[] scratch = scratch(counts.cap);
+        return new String(scratch, 0, counts.unrank(index, scratch, 0));
+    }
+
+    /**
+     * Same as {@link #unrank(BigInteger)}.
+     */
+    public String unrank(long index) {
+        return unrank(BigInteger.valueOf(index));
+    }
+
+    /**
+     * Returns the position of {@code value} among the strings matching this pattern in canonical order: the inverse
+     * of {@link #unrank(BigInteger)}.
+     *
+     * @param value The matching string. (Not <code>null</code>.)
+     * @throws IllegalStateException    If infinitely many strings match, or the counts needed to index them would
+     *                                  not fit in memory.
+     * @throws IllegalArgumentException If the value does not match this pattern.
+     */
+    public BigInteger rank(String value) {
+        assert value != null;
+        BigInteger index = finiteCounts().rank(value);
+        if (index == null) {
+            throw new IllegalArgumentException("\"" + value + "\" does not match " + regex);
+        }
+        return index;
+    }
+
+    /**
+     * Returns a sized, ordered stream of all strings matching this pattern in canonical order (see
+     * {@link #unrank(BigInteger)}), without repetitions. Each string is decoded from its position alone, so a
+     * parallel stream splits the position range across threads and keeps no record of the strings already
+     * produced. Should the language hold more than {@link Long#MAX_VALUE} strings, only that many are streamed.
+     *
+     * @throws IllegalStateException If infinitely many strings match, or the counts needed to index them would not
+     *                               fit in memory.
+     */
+    public Stream<String> enumerate() {
+        PathCountTable counts = finiteCounts();
+        BigInteger count = counts.countBetween(0, counts.cap);
+        long size = count.bitLength() < 64 ? count.longValue() : Long.MAX_VALUE;
+        return StreamSupport.stream(new EnumerationSpliterator(counts, null, 0, size), false);
+    }
+
+    /**
+     * Returns a sized stream of distinct random strings matching this pattern, in an order fully determined by
+     * {@code seed}: every matching string appears exactly once before the stream ends. For a pattern matching
+     * infinitely many strings, the strings up to the maximum generated length are used; as with
+     * {@link #enumerate()}, at most {@link Long#MAX_VALUE} strings are streamed.
+     *
+     * <p>Positions 0, 1, 2, ... are shuffled by a keyed bijection (a Feistel network with cycle walking) before being
+     * decoded in canonical order, so no record of the strings already produced is kept, and a parallel stream splits
+     * the positions across threads with the same results.
+     *
+     * @throws IllegalArgumentException If no string matching this pattern is short enough.
+     * @throws IllegalStateException    If the counts needed to index the strings would not fit in memory.
+     */
+    public Stream<String> uniqueStream(long seed) {
+        int longestMatch = table.longestMatch();
+        int cap = longestMatch >= 0 ? longestMatch : maxGeneratedLength;
+        PathCountTable counts = table.pathCounts(cap);
+        BigInteger count = counts.countBetween(0, cap);
+        if (count.signum() == 0) {
+            throw new IllegalArgumentException("No string matching " + regex + " is short enough to generate");
+        }
+        long size = count.bitLength() < 64 ? count.longValue() : Long.MAX_VALUE;
+        return StreamSupport.stream(
+                new EnumerationSpliterator(counts, new FeistelPermutation(count, seed), 0, size), false);
+    }
+
+    private PathCountTable finiteCounts() {
+        int longestMatch = table.longestMatch();
+        if (longestMatch < 0) {
+            throw new IllegalStateException("Infinitely many strings match " + regex);
+        }
+        return table.pathCounts(longestMatch);
+    }
+
+    /**
+     * Generates a value according to the length policy, writing at most {@code limit} characters into
+     * {@code buffer} from {@code offset} on.
+     *
+     * @return The number of characters written.
+     */
+    private int generate(char[] buffer, int offset, int limit, Random random,
+                         int desiredMinLength, int desiredMaxLength) {
+        return counted(generateValue(buffer, offset, limit, random, desiredMinLength, desiredMaxLength));
+    }
+
+    /**
+     * Adds a generated value of the given length to the metrics; every public way of generating goes through here.
+     */
+    private static int counted(int length) {
+        if (XegerMetrics.ENABLED) {
+            XegerMetrics.VALUES.increment();
+            XegerMetrics.CHARS.add(length);
+        }
+        return length;
+    }
+
+    private int generateValue(char[] buffer, int offset, int limit, Random random,
+                              int desiredMinLength, int desiredMaxLength) {
+        if (uniform) {
+            return generateUniform(buffer, offset, limit, random, desiredMinLength, desiredMaxLength);
+        }
+        if (desiredMinLength > -1 || desiredMaxLength > -1) {
+            return generateWithinBounds(buffer, offset, limit, random, desiredMinLength, desiredMaxLength);
+        }
+        if (table.distance[0] > limit) {
+            throw unreachableWithin(limit);
+        }
+        if (walk != null) {
+            return walk.walk(buffer, offset, limit, random, maxLoops);
+        }
+        int iterations = 0;
+        int length = 0;
+        int current = 0;
+
+        // Invariant: a match can always be completed from the current state within the limit.
+        while (true) {
+            if (table.accept[current]) {
+                if (length == limit || table.shortest[current] < 0) {
+                    return length;
+                }
+                //This is not weighted which means that all values have a 50/50 chance of stopping
+                //at each opportunity.
+                //For example [A-Z]* will be zero or one characters most of the time.
+                if (random.nextBoolean() || iterations > maxLoops) {
+                    return length;
+                }
+            }
+
+            int index;
+            if (iterations > maxLoops) {
+                // We have been looping too long on a non-accept state: complete the match along the shortest path.
+                index = table.shortest[current];
+                if (XegerMetrics.ENABLED) {
+                    XegerMetrics.FORCED_ESCAPES.increment();
+                }
+            } else {
+                index = table.pick(current, random);
+                if (table.distance[table.dest[index]] >= limit - length) {
+                    // No match can be completed within the limit through this transition: steer to the nearest
+                    // accept state instead.
+                    if (XegerMetrics.ENABLED) {
+                        XegerMetrics.TRUNCATIONS.increment();
+                    }
+                    if (table.accept[current]) {
+                        return length;
+                    }
+                    index = table.shortest[current];
+                }
+            }
+
+            buffer[offset + length++] = (char) XegerUtils.getRandomInt(table.min[index], table.max[index], random);
+            iterations++;
+            current = table.dest[index];
+        }
+    }
+
+    /**
+     * Draws uniformly from the matching strings within the bounds, writing at most {@code limit} characters into
+     * {@code buffer} from {@code offset} on.
+     *
+     * @return The number of characters written.
+     */
+    private int generateUniform(char[] buffer, int offset, int limit, Random random,
+                                int desiredMinLength, int desiredMaxLength) {
+        int lo = Math.max(desiredMinLength, 0);
+        int hi = desiredMaxLength > -1 ? Math.min(desiredMaxLength, limit) : limit;
+        PathCountTable counts = table.pathCounts(Math.max(hi, 0));
+        if (lo > hi || counts.countBetween(lo, hi).signum() == 0) {
+            throw new IllegalArgumentException("No string matching " + regex + " has a length between " + lo
+                    + " and " + hi);
+        }
+        return counts.sample(random, lo, hi, buffer, offset);
+    }
+
+    private IllegalArgumentException unreachableWithin(int limit) {
+        if (table.distance[0] == GenerationTable.UNREACHABLE) {
+            return new IllegalArgumentException("No string matches " + regex);
+        }
+        return new IllegalArgumentException("The shortest string matching " + regex + " has " + table.distance[0]
+                + " characters, more than the " + limit + " that can be generated (see "
+                + "the maximum generated length, or the space available)");
+    }
+
+    private static char[] scratch(int capacity) {
+        char[] scratch = SCRATCH.get();
+        if (scratch.length < capacity) {
+            scratch = new char[capacity];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    /**
+     * Walks the automaton so that the result is at least {@code desiredMinLength} and at most
+     * {@code desiredMaxLength} characters long (-1 meaning unbounded, up to {@code limit}). Only transitions from
+     * which an accept state can still be reached within the remaining window are taken, so the walk never has to
+     * backtrack or retry.
+     *
+     * @throws IllegalArgumentException If no string matching this pattern has a length in the window.
+     */
+    private int generateWithinBounds(char[] buffer, int offset, int limit, Random random,
+                                     int desiredMinLength, int desiredMaxLength) {
+        int lo = Math.max(desiredMinLength, 0);
+        int hi = desiredMaxLength > -1 ? Math.min(desiredMaxLength, limit) : limit;
+        LengthTable lengths = table.lengths(Math.max(hi, 0));
+        if (!lengths.canFinish(0, lo, hi)) {
+            throw new IllegalArgumentException("No string matching " + regex + " has a length between " + lo
+                    + " and " + hi + (hi < desiredMaxLength || desiredMaxLength < 0
+                    ? " (capped by the maximum generated length or the space available)" : ""));
+        }
+        int iterations = 0;
+        int length = 0;
+        int current = 0;
+
+        while (true) {
+            if (table.accept[current] && length >= lo) {
+                // Stopping here is within bounds; continuing is optional, as long as it can still end in bounds.
+                if (!lengths.canFinish(current, Math.max(lo - length, 1), hi - length)
+                        || iterations > maxLoops
+                        || random.nextBoolean()) {
+                    return length;
+                }
+            }
+            int index = iterations > maxLoops
+                    ? escapeIndexWithinBounds(current, lengths, lo - length - 1, hi - length - 1, random)
+                    : pickWithinBounds(current, lengths, lo - length - 1, hi - length - 1, random);
+            buffer[offset + length++] = (char) XegerUtils.getRandomInt(table.min[index], table.max[index], random);
+            iterations++;
+            current = table.dest[index];
+        }
+    }
+
+    /**
+     * Picks a transition of {@code state}, with the usual weights, among those whose destination can still finish
+     * in [{@code minRemaining}, {@code maxRemaining}] characters. Usually the first unconstrained pick already
+     * qualifies; otherwise falls back to a weighted scan over the qualifying transitions only.
+     */
+    private int pickWithinBounds(int state, LengthTable lengths, int minRemaining, int maxRemaining, Random random) {
+        for (int attempt = 0; attempt < 4; attempt++) {
+            int index = table.pick(state, random);
+            if (lengths.canFinish(table.dest[index], minRemaining, maxRemaining)) {
+                return index;
+            }
+        }
+        int from = table.transitionStart[state];
+        int to = table.transitionStart[state + 1];
+        int totalWeight = 0;
+        for (int i = from; i < to; i++) {
+            if (lengths.canFinish(table.dest[i], minRemaining, maxRemaining)) {
+                totalWeight += table.weight(i);
+            }
+        }
+        int option = random.nextInt(totalWeight);
+        for (int i = from; i < to; i++) {
+            if (lengths.canFinish(table.dest[i], minRemaining, maxRemaining)) {
+                option -= table.weight(i);
+                if (option < 0) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalStateException("No transition of state " + state + " can finish within bounds");
+    }
+
+    /**
+     * Bounded counterpart of following {@link GenerationTable#shortest}: the transition closest to an accept state if
+     * it can still finish within bounds, or a regular bounded pick otherwise.
+     */
+    private int escapeIndexWithinBounds(int state, LengthTable lengths, int minRemaining, int maxRemaining,
+                                        Random random) {
+        int index = table.shortest[state];
+        if (index >= 0 && lengths.canFinish(table.dest[index], minRemaining, maxRemaining)) {
+            if (XegerMetrics.ENABLED) {
+                XegerMetrics.FORCED_ESCAPES.increment();
+            }
+            return index;
+        }
+        return pickWithinBounds(state, lengths, minRemaining, maxRemaining, random);
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A Reactive Streams {@link Publisher} of an endless sequence of values matching a pattern, for asynchronous
+ * pipelines that must not be flooded: values are only generated once requested, in batches of at most the
+ * outstanding demand, on the given executor. Exactly as many values as requested are delivered, so the memory held
+ * for a subscriber is bounded by its demand rather than by how far it lags behind.
+ *
+ * <p>Every subscriber gets a randomizer of its own from the pattern's {@link XegerConfig#getRandomSupplier()}, so a
+ * seeded supplier gives each subscriber the same sequence. The stream never completes; it ends when the subscriber
+ * cancels, or with {@code onError} if the pattern cannot be generated from.
+ *
+ * <p>Requires {@code org.reactivestreams:reactive-streams}, an optional dependency, on the class path. On Java 9 and
+ * later, {@code XegerFlowPublisher} offers the same for {@code java.util.concurrent.Flow}.
+ */
+public final class XegerPublisher implements Publisher<String> {
+
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final XegerPattern pattern;
+    private final Executor executor;
+    private final int batchSize;
+
+    /**
+     * Creates a publisher generating on the common {@link ForkJoinPool}.
+     *
+     * @param pattern The pattern of the values. (Not <code>null</code>.)
+     */
+    public XegerPublisher(XegerPattern pattern) {
+        this(pattern, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param pattern   The pattern of the values. (Not <code>null</code>.)
+     * @param executor  Runs the generation and delivers the signals. (Not <code>null</code>.)
+     * @param batchSize The most values generated at once, however large the demand.
+     * @throws IllegalArgumentException If {@code batchSize} is not positive.
+     */
+    public XegerPublisher(XegerPattern pattern, Executor executor, int batchSize) {
+        assert pattern != null;
+        assert executor != null;
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.pattern = pattern;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super String> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Rule 1.9: subscriber must not be null");
+        }
+        subscriber.onSubscribe(new ReactiveSubscription(subscriber));
+    }
+
+    private final class ReactiveSubscription extends GeneratorSubscription implements Subscription {
+
+        private final Subscriber<? super String> subscriber;
+
+        ReactiveSubscription(Subscriber<? super String> subscriber) {
+            super(pattern, pattern.getConfig().getRandomSupplier().get(), executor, batchSize);
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        void onNext(String value) {
+            subscriber.onNext(value);
+        }
+
+        @Override
+        void onError(Throwable error) {
+            subscriber.onError(error);
+        }
+    }
+}
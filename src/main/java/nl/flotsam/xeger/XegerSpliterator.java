@@ -0,0 +1,137 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} over generated values that splits without sharing any mutable state between the halves.
+ *
+ * <p>It comes in two flavours:
+ * <ul>
+ *   <li><em>Unsized</em>: an infinite supply, where every split forks its own {@link SplittableRandom} to seed the
+ *       values it generates.</li>
+ *   <li><em>Sized</em>: a fixed range of value positions, where the value at position {@code i} is seeded from
+ *       ({@code seed}, {@code i}) alone. Splitting only halves the range, so the results, and their order, are the
+ *       same however many threads consume the stream.</li>
+ * </ul>
+ */
+final class XegerSpliterator implements Spliterator<String> {
+
+    private static final int SIZED_CHARACTERISTICS = SIZED | SUBSIZED | ORDERED | IMMUTABLE | NONNULL;
+    private static final int UNSIZED_CHARACTERISTICS = IMMUTABLE | NONNULL;
+
+    private final XegerPattern pattern;
+    private final int desiredMinLength;
+    private final int desiredMaxLength;
+    private final SplitMixRandom random = new SplitMixRandom(0);
+
+    /** Seed source of an unsized spliterator; {@code null} when sized. */
+    private final SplittableRandom seeds;
+
+    /** Sequence seed of a sized spliterator. */
+    private final long seed;
+    private long index;
+
+    /**
+     * End of the position range of a sized spliterator; for an unsized one, the size estimate, halved on every
+     * split (as {@link java.util.stream.Stream#generate} does) so that splitting stops at a sensible depth.
+     */
+    private long fence;
+
+    private XegerSpliterator(XegerPattern pattern, int desiredMinLength, int desiredMaxLength,
+                             SplittableRandom seeds, long seed, long index, long fence) {
+        this.pattern = pattern;
+        this.desiredMinLength = desiredMinLength;
+        this.desiredMaxLength = desiredMaxLength;
+        this.seeds = seeds;
+        this.seed = seed;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    static XegerSpliterator unsized(XegerPattern pattern, long seed, int desiredMinLength, int desiredMaxLength) {
+        return new XegerSpliterator(pattern, desiredMinLength, desiredMaxLength, new SplittableRandom(seed),
+                0, 0, Long.MAX_VALUE);
+    }
+
+    static XegerSpliterator sized(XegerPattern pattern, long count, long seed, int desiredMinLength,
+                                  int desiredMaxLength) {
+        return new XegerSpliterator(pattern, desiredMinLength, desiredMaxLength, null, seed, 0, count);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (seeds != null) {
+            random.setSeed(seeds.nextLong());
+        } else if (index < fence) {
+            random.setSeed(SplitMixRandom.seedAt(seed, index++));
+        } else {
+            return false;
+        }
+        action.accept(pattern.generate(random, desiredMinLength, desiredMaxLength));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        if (seeds != null) {
+            Spliterator.super.forEachRemaining(action);
+            return;
+        }
+        long i = index;
+        long end = fence;
+        index = end;
+        for (; i < end; i++) {
+            random.setSeed(SplitMixRandom.seedAt(seed, i));
+            action.accept(pattern.generate(random, desiredMinLength, desiredMaxLength));
+        }
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        if (seeds != null) {
+            if (fence == 0) {
+                return null;
+            }
+            fence >>>= 1;
+            return new XegerSpliterator(pattern, desiredMinLength, desiredMaxLength, seeds.split(), 0, 0, fence);
+        }
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        XegerSpliterator prefix = new XegerSpliterator(pattern, desiredMinLength, desiredMaxLength, null, seed,
+                index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return seeds != null ? UNSIZED_CHARACTERISTICS : SIZED_CHARACTERISTICS;
+    }
+}
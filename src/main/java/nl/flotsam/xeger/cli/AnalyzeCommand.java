@@ -0,0 +1,101 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.PatternAnalysis;
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerConfig;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Command(
+    name = "analyze",
+    description = "Report the automaton size, match lengths and number of matches of each pattern, compiling it "
+            + "within a budget.",
+    mixinStandardHelpOptions = true
+)
+public class AnalyzeCommand implements Callable<Integer> {
+
+    @Parameters(paramLabel = "REGEX", arity = "1..*", description = "The regular expression(s) to analyze.")
+    private List<String> regexes;
+
+    @Option(names = {"--charset"}, description = "Restrict the automaton to these characters, as for xeger itself "
+            + "(default: UNICODE).")
+    private String charset = "UNICODE";
+
+    @Option(names = {"--max-states"}, description = "Give up on patterns needing more automaton states than this; "
+            + "0 for no limit (default: 100000).")
+    private int maxStates = 100000;
+
+    @Option(names = {"--timeout"}, paramLabel = "MILLIS", description = "Give up on patterns taking longer than "
+            + "this to compile; 0 for no limit (default: 10000).")
+    private long timeoutMillis = 10000;
+
+    @Spec
+    private CommandSpec spec;
+
+    public Integer call() {
+        XegerConfig config;
+        try {
+            config = XegerConfig.builder()
+                    .characterSet(XegerCommand.resolveCharacterSet(charset))
+                    .maxStates(maxStates)
+                    .compileTimeoutMillis(timeoutMillis)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("xeger analyze: " + e.getMessage());
+            return 1;
+        }
+        PrintWriter out = spec.commandLine().getOut();
+        int failures = 0;
+        for (int i = 0; i < regexes.size(); i++) {
+            String regex = regexes.get(i);
+            PatternAnalysis analysis;
+            try {
+                analysis = Xeger.analyze(regex, config);
+            } catch (IllegalArgumentException e) {
+                System.err.println("xeger analyze: pattern #" + (i + 1) + " (" + regex + "): " + e.getMessage());
+                failures++;
+                continue;
+            }
+            if (i > 0) {
+                out.println();
+            }
+            out.println("pattern:        " + regex);
+            out.println("states:         " + analysis.getStateCount());
+            out.println("transitions:    " + analysis.getTransitionCount());
+            boolean empty = analysis.getMinLength() < 0;
+            out.println("min length:     " + (empty ? "none" : String.valueOf(analysis.getMinLength())));
+            out.println("max length:     " + (empty ? "none"
+                    : analysis.isFinite() ? String.valueOf(analysis.getMaxLength()) : "infinite"));
+            out.println("finite:         " + (analysis.isFinite() ? "yes" : "no"));
+            out.println("language size:  " + (analysis.isFinite() ? analysis.getLanguageSize() : "infinite"));
+            out.printf("compile time:   %.3f ms%n", analysis.getCompileNanos() / 1e6);
+        }
+        out.flush();
+        return failures > 0 ? 1 : 0;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.PatternBundle;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Command(
+    name = "compile",
+    description = "Precompile the patterns of a file, one per line, into a bundle for Xeger.loadBundle.",
+    mixinStandardHelpOptions = true
+)
+public class CompileCommand implements Callable<Integer> {
+
+    @Parameters(paramLabel = "FILE", description = "Text file with one regular expression per line; blank lines "
+            + "are skipped.")
+    private Path input;
+
+    @Option(names = {"-o", "--output"}, required = true, description = "Bundle file to write.")
+    private Path output;
+
+    @Option(names = {"--charset"}, description = "Restrict generated characters, as for xeger itself "
+            + "(default: UNICODE).")
+    private String charset = "UNICODE";
+
+    public Integer call() {
+        List<String> regexes = new ArrayList<String>();
+        try {
+            for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    regexes.add(line);
+                }
+            }
+            PatternBundle.write(output, regexes, XegerCommand.resolveCharacterSet(charset));
+        } catch (IOException e) {
+            System.err.println("xeger compile: " + e);
+            return 1;
+        } catch (IllegalArgumentException e) {
+            System.err.println("xeger compile: " + e.getMessage());
+            return 1;
+        }
+        System.err.println("Compiled " + regexes.size() + " pattern(s) into " + output);
+        return 0;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Unsynchronized, buffered line output to a channel. Values can be generated straight into the character buffer
+ * returned by {@link #reserve(int)}, which is only encoded and written once full, so a run costs a few large writes
+ * instead of one synchronized console write per value.
+ *
+ * <p>Characters the charset cannot encode, such as unpaired surrogates, are written as its replacement.
+ *
+ * <p>Buffer positions are moved through {@link Buffer}: the covariant overrides of {@code flip()} and {@code clear()}
+ * in {@link CharBuffer} and {@link ByteBuffer} only exist from Java 9 on.
+ */
+final class LineWriter implements Closeable, Appendable {
+
+    /**
+     * Size of the character buffer, and so the most characters {@link #reserve(int)} can make room for.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long bytesWritten;
+
+    private LineWriter(WritableByteChannel channel, boolean closeChannel, Charset charset) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Writes UTF-8 to the given file, replacing it if it exists.
+     */
+    static LineWriter open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new LineWriter(channel, true, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes to standard output in the platform charset, like {@link System#out}; closing flushes but leaves standard
+     * output open.
+     */
+    static LineWriter stdout() {
+        return new LineWriter(new FileOutputStream(FileDescriptor.out).getChannel(), false, Charset.defaultCharset());
+    }
+
+    /**
+     * Returns the character buffer, after making room for at least {@code length} characters. Characters put into it
+     * are written out later.
+     *
+     * @throws IllegalArgumentException If {@code length} exceeds the buffer size.
+     */
+    CharBuffer reserve(int length) throws IOException {
+        if (length > BUFFER_SIZE) {
+            throw new IllegalArgumentException("Cannot reserve " + length + " characters, more than the buffer size "
+                    + BUFFER_SIZE);
+        }
+        if (chars.remaining() < length) {
+            drain(false);
+        }
+        return chars;
+    }
+
+    @Override
+    public LineWriter append(CharSequence value) throws IOException {
+        return append(value, 0, value.length());
+    }
+
+    @Override
+    public LineWriter append(CharSequence value, int start, int end) throws IOException {
+        int from = start;
+        while (from < end) {
+            if (!chars.hasRemaining()) {
+                drain(false);
+            }
+            int to = Math.min(end, from + chars.remaining());
+            chars.append(value, from, to);
+            from = to;
+        }
+        return this;
+    }
+
+    @Override
+    public LineWriter append(char c) throws IOException {
+        reserve(1).put(c);
+        return this;
+    }
+
+    void newLine() throws IOException {
+        append('\n');
+    }
+
+    /**
+     * Returns the number of bytes written to the channel so far.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain(true);
+            ((Buffer) bytes).clear();
+            encoder.flush(bytes);
+            write();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private void drain(boolean endOfInput) throws IOException {
+        ((Buffer) chars).flip();
+        CoderResult result;
+        do {
+            ((Buffer) bytes).clear();
+            result = encoder.encode(chars, bytes, endOfInput);
+            write();
+        } while (result.isOverflow());
+        // An unfinished surrogate pair stays behind for the next drain.
+        chars.compact();
+    }
+
+    private void write() throws IOException {
+        ((Buffer) bytes).flip();
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+}
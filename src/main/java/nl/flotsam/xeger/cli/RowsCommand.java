@@ -0,0 +1,107 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.RecordGenerator;
+import nl.flotsam.xeger.XegerConfig;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+@Command(
+    name = "rows",
+    description = "Generate records whose fields match the regular expression of their column, as CSV or JSONL.",
+    mixinStandardHelpOptions = true
+)
+public class RowsCommand implements Callable<Integer> {
+
+    @Parameters(paramLabel = "NAME=REGEX", arity = "1..*", description = "Columns, in order.")
+    private List<String> columns;
+
+    @Option(names = {"-n", "--rows"}, description = "Number of records to generate (default: 1).")
+    private long rows = 1;
+
+    @Option(names = {"--format"}, description = "Output format: ${COMPLETION-CANDIDATES} (default: CSV).")
+    private RecordGenerator.Format format = RecordGenerator.Format.CSV;
+
+    @Option(names = {"--seed"}, description = "Random seed for reproducible output.")
+    private Long seed;
+
+    @Option(names = {"--charset"}, description = "Restrict generated characters, as for xeger itself "
+            + "(default: UNICODE).")
+    private String charset = "UNICODE";
+
+    @Option(names = {"-o", "--output"}, description = "Write to this file (UTF-8) instead of standard output.")
+    private Path output;
+
+    @Option(names = {"--threads"}, description = "Number of threads generating records (default: 1). Output is "
+            + "the same for any number of threads when --seed is set.")
+    private int threads = 1;
+
+    @Option(names = {"-q", "--quiet"}, description = "Do not print throughput statistics to standard error.")
+    private boolean quiet;
+
+    @Spec
+    private CommandSpec spec;
+
+    public Integer call() throws IOException {
+        if (threads < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--threads must be positive: " + threads);
+        }
+        if (rows < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--rows must not be negative: " + rows);
+        }
+        RecordGenerator.Builder builder = RecordGenerator.builder()
+                .config(XegerConfig.builder().characterSet(XegerCommand.resolveCharacterSet(charset)).build());
+        for (String column : columns) {
+            int separator = column.indexOf('=');
+            if (separator <= 0) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "Expected NAME=REGEX: " + column);
+            }
+            builder.column(column.substring(0, separator), column.substring(separator + 1));
+        }
+        RecordGenerator records;
+        try {
+            records = builder.build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("xeger rows: " + e.getMessage());
+            return 1;
+        }
+        long started = System.nanoTime();
+        LineWriter out = output != null ? LineWriter.open(output) : LineWriter.stdout();
+        try {
+            records.write(out, format, rows, seed != null ? seed : new Random().nextLong(), threads);
+        } finally {
+            out.close();
+        }
+        if (!quiet) {
+            XegerCommand.printStats(rows, "rows", out.getBytesWritten(), System.nanoTime() - started, "");
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.XegerConfig;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+@Command(
+    name = "serve",
+    description = "Serve generated values over HTTP, keeping compiled patterns between requests.",
+    mixinStandardHelpOptions = true
+)
+public class ServeCommand implements Callable<Integer> {
+
+    @Option(names = {"--port"}, description = "Port to listen on (default: 8080; 0 picks a free one).")
+    private int port = 8080;
+
+    @Option(names = {"--bind"}, description = "Address to listen on (default: 127.0.0.1, local calls only).")
+    private String bind = "127.0.0.1";
+
+    @Option(names = {"--threads"}, description = "Number of threads handling requests (default: number of "
+            + "processors).")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"--charset"}, description = "Character set of requests that do not name one, as for xeger "
+            + "itself (default: UNICODE).")
+    private String charset = "UNICODE";
+
+    @Option(names = {"--max-values"}, description = "Most values a single request may ask for (default: 1000000).")
+    private long maxValues = 1000000;
+
+    @Option(names = {"--max-states"}, description = "Most deterministic states a requested pattern may compile to "
+            + "(default: 100000; 0 for no limit).")
+    private int maxStates = 100000;
+
+    @Option(names = {"--compile-timeout"}, description = "Most milliseconds compiling a requested pattern may take "
+            + "(default: 5000; 0 for no limit).")
+    private long compileTimeout = 5000;
+
+    @Option(names = {"--max-body"}, description = "Largest request body accepted, in bytes (default: 1048576).")
+    private int maxBody = 1 << 20;
+
+    @Spec
+    private CommandSpec spec;
+
+    public Integer call() throws IOException, InterruptedException {
+        if (threads < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--threads must be positive: " + threads);
+        }
+        if (maxStates < 0 || compileTimeout < 0 || maxBody < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--max-states, --compile-timeout and --max-body must not be negative");
+        }
+        XegerConfig config = XegerConfig.builder()
+                .characterSet(XegerCommand.resolveCharacterSet(charset))
+                .maxStates(maxStates)
+                .compileTimeoutMillis(compileTimeout)
+                .build();
+        final XegerServer server = XegerServer.start(new InetSocketAddress(bind, port), threads, config, maxValues,
+                maxBody);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            stopped.countDown();
+        }));
+        System.err.println("Listening on http://" + bind + ":" + server.getPort() + "/generate");
+        stopped.await();
+        return 0;
+    }
+}
@@ -19,67 +19,371 @@
 package nl.flotsam.xeger.cli;
 
 import nl.flotsam.xeger.CharacterSet;
-import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerConfig;
+import nl.flotsam.xeger.XegerPattern;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
 
 @Command(
     name = "xeger",
     description = "Generate random strings that match a given regular expression.",
     mixinStandardHelpOptions = true,
-    version = "xeger 0.1"
+    version = "xeger 0.1",
+    subcommands = {AnalyzeCommand.class, CompileCommand.class, RowsCommand.class, ServeCommand.class}
 )
 public class XegerCommand implements Callable<Integer> {
 
-    @Parameters(paramLabel = "PATTERN", description = "Regular expression pattern(s) to generate strings for.")
+    @Parameters(paramLabel = "PATTERN", arity = "0..*",
+            description = "Regular expression pattern(s) to generate strings for.")
     private List<String> patterns;
 
+    @Option(names = {"-f", "--patterns-file"}, paramLabel = "FILE", description = "Also read patterns from this "
+            + "file (UTF-8), one per line (blank lines are skipped), or from standard input if FILE is -. The file is "
+            + "read as generation proceeds, so it can be of any size.")
+    private String patternsFile;
+
     @Option(names = {"-n", "--count"}, description = "Number of strings to generate per pattern (default: 1).")
     private int count = 1;
 
-    @Option(names = {"--min-length"}, description = "Desired minimum length of generated strings (best effort).")
+    @Option(names = {"--min-length"}, description = "Desired minimum length of generated strings.")
     private int minLength = -1;
 
-    @Option(names = {"--max-length"}, description = "Desired maximum length of generated strings (best effort).")
+    @Option(names = {"--max-length"}, description = "Desired maximum length of generated strings.")
     private int maxLength = -1;
 
     @Option(names = {"--seed"}, description = "Random seed for reproducible output.")
     private Long seed;
 
-    @Option(names = {"--charset"}, description = "Restrict generated characters: UNICODE (default), ASCII, PRINTABLE_ASCII.")
+    @Option(names = {"--charset"}, description = "Restrict generated characters: UNICODE (default), ASCII, "
+            + "PRINTABLE_ASCII, DIGITS, UPPERCASE, LOWERCASE, LETTERS, ALPHANUMERIC, WORD, WHITESPACE, PUNCTUATION; "
+            + "separate several with commas to allow their union.")
     private String charset = "UNICODE";
 
-    public Integer call() {
-        CharacterSet characterSet = resolveCharacterSet(charset);
-        for (String pattern : patterns) {
-            Random random = seed != null ? new Random(seed) : new Random();
-            Xeger xeger = new Xeger(pattern, random, characterSet);
-            for (int i = 0; i < count; i++) {
-                String result = (minLength >= 0 || maxLength >= 0)
-                        ? xeger.generate(minLength, maxLength)
-                        : xeger.generate();
-                System.out.println(result);
+    @Option(names = {"-o", "--output"}, description = "Write to this file (UTF-8) instead of standard output.")
+    private Path output;
+
+    @Option(names = {"--threads"}, description = "Number of threads compiling patterns and generating values "
+            + "(default: 1). Output is the same for any number of threads when --seed is set.")
+    private int threads = 1;
+
+    @Option(names = {"--unordered"}, description = "With --threads, write values as soon as they are generated "
+            + "rather than in pattern order.")
+    private boolean unordered;
+
+    @Option(names = {"-q", "--quiet"}, description = "Do not print throughput statistics to standard error.")
+    private boolean quiet;
+
+    @Spec
+    private CommandSpec spec;
+
+    /**
+     * Values are generated in chunks of this many, each with a randomizer of its own, so that chunks can be
+     * generated by any thread and the output for a seed does not depend on the number of threads.
+     */
+    static final int CHUNK_SIZE = 16384;
+
+    private XegerConfig config;
+
+    // Progress, only updated by the thread writing the output.
+    private long valuesWritten;
+    private long failures;
+
+    public Integer call() throws IOException, InterruptedException {
+        if (threads < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--threads must be positive: " + threads);
+        }
+        config = XegerConfig.builder().characterSet(resolveCharacterSet(charset)).build();
+        if (config.getMaxGeneratedLength() > LineWriter.BUFFER_SIZE) {
+            // Values are generated straight into the output buffer, which must hold the longest one.
+            System.err.println("xeger: nl.flotsam.xeger.MAX_GENERATED_LENGTH is " + config.getMaxGeneratedLength()
+                    + ", more than the " + LineWriter.BUFFER_SIZE + " characters the CLI can write at once");
+            return 1;
+        }
+        long started = System.nanoTime();
+        BufferedReader reader = openPatternsFile();
+        LineWriter out = output != null ? LineWriter.open(output) : LineWriter.stdout();
+        try {
+            Iterator<String> regexes = regexes(reader);
+            if (threads == 1) {
+                writeSequentially(regexes, out);
+            } else {
+                writeInParallel(regexes, out);
+            }
+        } finally {
+            try {
+                out.close();
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+        if (!quiet) {
+            printStats(valuesWritten, "values", out.getBytesWritten(), System.nanoTime() - started,
+                    failures > 0 ? "; " + failures + " pattern(s) failed" : "");
+        }
+        return failures > 0 ? 1 : 0;
+    }
+
+    private BufferedReader openPatternsFile() throws IOException {
+        if (patternsFile == null) {
+            return null;
+        }
+        if (patternsFile.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(patternsFile), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the positional patterns followed by the non-blank lines of the patterns file, read lazily.
+     */
+    private Iterator<String> regexes(BufferedReader reader) {
+        Stream<String> regexes = patterns != null ? patterns.stream() : Stream.<String>empty();
+        if (reader != null) {
+            regexes = Stream.concat(regexes, reader.lines().filter(line -> !line.trim().isEmpty()));
+        }
+        return regexes.iterator();
+    }
+
+    private void writeSequentially(Iterator<String> regexes, LineWriter out) throws IOException {
+        for (long number = 1; regexes.hasNext(); number++) {
+            String regex = regexes.next();
+            try {
+                XegerPattern pattern = XegerPattern.compile(regex, config);
+                for (int chunk = 0; (long) chunk * CHUNK_SIZE < count; chunk++) {
+                    writeChunk(pattern, chunk, out);
+                }
+            } catch (IllegalArgumentException e) {
+                fail(number, regex, e);
+            }
+        }
+    }
+
+    /**
+     * Compiles patterns and generates their chunks on a pool of threads, writing the chunks in order, or as they
+     * complete if {@code --unordered}. Each pattern is compiled once, by one worker; its chunks are only scheduled
+     * once that is done, so no worker waits for another, and if it fails all chunks carry the same failure, which
+     * is reported once. At most two chunks per thread are held in memory at any time, and patterns are only read as
+     * fast as they are generated.
+     */
+    private void writeInParallel(Iterator<String> regexes, LineWriter out) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<Chunk>> completed = new LinkedBlockingQueue<Future<Chunk>>();
+        Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        try {
+            for (long number = 1; regexes.hasNext(); number++) {
+                String regex = regexes.next();
+                if (count <= 0) {
+                    continue;
+                }
+                CompletableFuture<XegerPattern> compiled =
+                        CompletableFuture.supplyAsync(() -> XegerPattern.compile(regex, config), executor);
+                for (int index = 0; (long) index * CHUNK_SIZE < count; index++) {
+                    final Chunk chunk = new Chunk(number, regex, index);
+                    CompletableFuture<Chunk> generated =
+                            compiled.handleAsync((pattern, failure) -> generate(chunk, pattern, failure), executor);
+                    if (unordered) {
+                        generated.whenComplete((result, failure) -> completed.add(generated));
+                    }
+                    pending.add(generated);
+                    if (pending.size() >= 2 * threads) {
+                        write(take(pending, completed), out);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(take(pending, completed), out);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Chunk take(Deque<Future<Chunk>> pending, BlockingQueue<Future<Chunk>> completed)
+            throws InterruptedException {
+        Future<Chunk> next;
+        if (unordered) {
+            next = completed.take();
+            pending.remove(next);
+        } else {
+            next = pending.poll();
+        }
+        try {
+            return next.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void write(Chunk chunk, LineWriter out) throws IOException {
+        if (chunk.failure != null) {
+            // All chunks of a pattern fail alike; report it once.
+            if (chunk.index == 0) {
+                fail(chunk.number, chunk.regex, chunk.failure);
+            }
+        } else {
+            out.append(chunk.lines);
+            valuesWritten += chunkLength(chunk.index);
+        }
+    }
+
+    private void fail(long number, String regex, IllegalArgumentException failure) {
+        System.err.println("xeger: pattern #" + number + " (" + regex + "): " + failure.getMessage());
+        failures++;
+    }
+
+    /**
+     * Generates the values of the given chunk straight into the output buffer.
+     */
+    private void writeChunk(XegerPattern pattern, int chunk, LineWriter out) throws IOException {
+        Random random = chunkRandom(chunk);
+        int longest = pattern.getConfig().getMaxGeneratedLength();
+        for (int i = 0; i < chunkLength(chunk); i++) {
+            if (minLength >= 0 || maxLength >= 0) {
+                out.append(pattern.generate(random, minLength, maxLength));
+            } else {
+                // Leaving room for the longest value keeps the output independent of the buffer position.
+                pattern.generateInto(random, out.reserve(longest));
+            }
+            out.newLine();
+            valuesWritten++;
+        }
+    }
+
+    /**
+     * Generates the values of the given chunk from its compiled pattern, or records why the pattern failed to
+     * compile.
+     */
+    private Chunk generate(Chunk chunk, XegerPattern pattern, Throwable compileFailure) {
+        if (compileFailure != null) {
+            Throwable cause = compileFailure instanceof CompletionException
+                    ? compileFailure.getCause() : compileFailure;
+            if (!(cause instanceof IllegalArgumentException)) {
+                throw new CompletionException(cause);
             }
+            chunk.failure = (IllegalArgumentException) cause;
+            return chunk;
+        }
+        try {
+            Random random = chunkRandom(chunk.index);
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < chunkLength(chunk.index); i++) {
+                if (minLength >= 0 || maxLength >= 0) {
+                    lines.append(pattern.generate(random, minLength, maxLength));
+                } else {
+                    pattern.generateInto(random, lines);
+                }
+                lines.append('\n');
+            }
+            chunk.lines = lines;
+        } catch (IllegalArgumentException e) {
+            chunk.failure = e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    private int chunkLength(int chunk) {
+        return (int) Math.min(CHUNK_SIZE, count - (long) chunk * CHUNK_SIZE);
+    }
+
+    /**
+     * The first chunk of every pattern uses the seed itself, so the first {@link #CHUNK_SIZE} values are those of a
+     * single {@link Random} with that seed.
+     */
+    private Random chunkRandom(int chunk) {
+        if (seed == null) {
+            return new Random();
+        }
+        return new Random(seed + chunk * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Prints throughput statistics of a run to standard error.
+     */
+    static void printStats(long count, String unit, long bytes, long nanos, String remark) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        System.err.printf("Generated %d %s (%.1f MB) in %.3f s: %.0f %s/s, %.1f MB/s%s%n",
+                count, unit, bytes / 1e6, seconds, count / seconds, unit, bytes / 1e6 / seconds, remark);
+    }
+
+    /**
+     * One chunk of the values of one pattern, filled in by a worker thread.
+     */
+    private static final class Chunk {
+        final long number;
+        final String regex;
+        final int index;
+        StringBuilder lines;
+        IllegalArgumentException failure;
+
+        Chunk(long number, String regex, int index) {
+            this.number = number;
+            this.regex = regex;
+            this.index = index;
+        }
+    }
+
+    static CharacterSet resolveCharacterSet(String names) {
+        CharacterSet union = null;
+        for (String name : names.split(",")) {
+            CharacterSet characterSet = resolveSingleCharacterSet(name.trim());
+            union = union == null ? characterSet : union.union(characterSet);
         }
-        return 0;
+        return union;
     }
 
-    private CharacterSet resolveCharacterSet(String name) {
+    private static CharacterSet resolveSingleCharacterSet(String name) {
         switch (name.toUpperCase()) {
             case "ASCII":           return CharacterSet.ASCII;
             case "PRINTABLE_ASCII": return CharacterSet.PRINTABLE_ASCII;
+            case "DIGITS":          return CharacterSet.DIGITS;
+            case "UPPERCASE":       return CharacterSet.UPPERCASE;
+            case "LOWERCASE":       return CharacterSet.LOWERCASE;
+            case "LETTERS":         return CharacterSet.LETTERS;
+            case "ALPHANUMERIC":    return CharacterSet.ALPHANUMERIC;
+            case "WORD":            return CharacterSet.WORD;
+            case "WHITESPACE":      return CharacterSet.WHITESPACE;
+            case "PUNCTUATION":     return CharacterSet.PUNCTUATION;
             case "UNICODE":
             default:                return CharacterSet.UNICODE;
         }
     }
 
     public static void main(String[] args) {
-        System.exit(new CommandLine(new XegerCommand()).execute(args));
+        System.exit(new CommandLine(new XegerCommand()).setCaseInsensitiveEnumValuesAllowed(true).execute(args));
     }
 }
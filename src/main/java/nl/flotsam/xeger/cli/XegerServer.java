@@ -0,0 +1,306 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.flotsam.xeger.CacheStats;
+import nl.flotsam.xeger.CharacterSet;
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerConfig;
+import nl.flotsam.xeger.XegerPattern;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local HTTP front end of the generator, so that a test harness pays JVM startup and pattern compilation once
+ * instead of once per call. Compiled patterns stay in the cache of {@link XegerPattern#compile(String, XegerConfig)}
+ * between requests, and requests are handled by a fixed pool of worker threads.
+ *
+ * <p>Endpoints:
+ * <ul>
+ * <li>{@code POST /generate}: the body holds patterns, one per line (UTF-8, blank lines skipped);</li>
+ * <li>{@code GET /generate?pattern=P}: a single pattern;</li>
+ * <li>{@code GET /stats}: the counters of the pattern cache;</li>
+ * <li>{@code GET /health}.</li>
+ * </ul>
+ * Both forms of {@code /generate} take the query parameters {@code count} (per pattern, default 1), {@code seed},
+ * {@code minLength}, {@code maxLength} and {@code charset}, as the command line does, and answer
+ * {@code {"results":[{"pattern":P,"values":[...]}, {"pattern":Q,"error":"..."}]}}: a pattern that cannot be generated
+ * from fails on its own, not the whole request.
+ *
+ * <p>Patterns come from the client, so they are compiled within the state and time budget of the server's
+ * configuration ({@link XegerConfig.Builder#maxStates(int)}, {@link XegerConfig.Builder#compileTimeoutMillis(long)}).
+ * A pattern that exceeds it gets an {@code error} entry like any other pattern that cannot be generated from. Bodies
+ * larger than the configured limit are refused with 413 before they are read in full.
+ */
+final class XegerServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final XegerConfig config;
+    private final long maxValues;
+    private final int maxBodyBytes;
+
+    private XegerServer(HttpServer server, ExecutorService executor, XegerConfig config, long maxValues,
+                        int maxBodyBytes) {
+        this.server = server;
+        this.executor = executor;
+        this.config = config;
+        this.maxValues = maxValues;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Starts a server on the given address (port 0 picks a free port).
+     *
+     * @param config       The configuration patterns are compiled with: its character set is used by requests that
+     *                     do not name one, and its compile budget applies to every pattern. (Not <code>null</code>.)
+     * @param maxValues    The most values a single request may ask for, over all its patterns.
+     * @param maxBodyBytes The largest request body accepted.
+     */
+    static XegerServer start(InetSocketAddress address, int threads, XegerConfig config, long maxValues,
+                             int maxBodyBytes) throws IOException {
+        assert config != null;
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        XegerServer xegerServer = new XegerServer(server, executor, config, maxValues, maxBodyBytes);
+        server.createContext("/generate", xegerServer::generate);
+        server.createContext("/stats", xegerServer::stats);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+        server.setExecutor(executor);
+        server.start();
+        return xegerServer;
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, gives the ones in progress up to {@code delaySeconds} to finish, and stops the
+     * workers.
+     */
+    void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    private void generate(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            List<String> regexes = new ArrayList<String>();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                byte[] bytes = readBody(exchange);
+                if (bytes == null) {
+                    respondError(exchange, 413, "Request body exceeds " + maxBodyBytes + " bytes");
+                    return;
+                }
+                BufferedReader body = new BufferedReader(
+                        new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+                for (String line = body.readLine(); line != null; line = body.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        regexes.add(line);
+                    }
+                }
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                if (query.get("pattern") == null) {
+                    throw new IllegalArgumentException("Missing parameter: pattern");
+                }
+                regexes.add(query.get("pattern"));
+            } else {
+                respondError(exchange, 405, "Use GET or POST");
+                return;
+            }
+            int count = intParameter(query, "count", 1);
+            int minLength = intParameter(query, "minLength", -1);
+            int maxLength = intParameter(query, "maxLength", -1);
+            Long seed = query.containsKey("seed") ? Long.valueOf(longParameter(query, "seed")) : null;
+            CharacterSet characterSet = query.containsKey("charset")
+                    ? XegerCommand.resolveCharacterSet(query.get("charset")) : config.getCharacterSet();
+            if (count < 0) {
+                throw new IllegalArgumentException("count must not be negative: " + count);
+            }
+            if ((long) count * regexes.size() > maxValues) {
+                throw new IllegalArgumentException("At most " + maxValues + " values can be asked for at once");
+            }
+
+            XegerConfig config = this.config.toBuilder().characterSet(characterSet).build();
+            StringBuilder json = new StringBuilder("{\"results\":[");
+            for (int i = 0; i < regexes.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                String regex = regexes.get(i);
+                json.append("{\"pattern\":");
+                appendJson(regex, json);
+                int mark = json.length();
+                try {
+                    XegerPattern pattern = XegerPattern.compile(regex, config);
+                    Random random = seed != null ? new Random(seed) : ThreadLocalRandom.current();
+                    json.append(",\"values\":[");
+                    for (int v = 0; v < count; v++) {
+                        if (v > 0) {
+                            json.append(',');
+                        }
+                        appendJson(pattern.generate(random, minLength, maxLength), json);
+                    }
+                    json.append(']');
+                } catch (IllegalArgumentException e) {
+                    json.setLength(mark);
+                    json.append(",\"error\":");
+                    appendJson(String.valueOf(e.getMessage()), json);
+                }
+                json.append('}');
+            }
+            json.append("]}\n");
+            respond(exchange, 200, "application/json", json.toString());
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 400, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the request body, or returns <code>null</code> once it turns out to be larger than allowed.
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > maxBodyBytes) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not an integer: Content-Length=" + length);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                if (bytes.size() + n > maxBodyBytes) {
+                    return null;
+                }
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        CacheStats stats = Xeger.cacheStats();
+        respond(exchange, 200, "application/json", "{\"hits\":" + stats.getHits() + ",\"misses\":" + stats.getMisses()
+                + ",\"evictions\":" + stats.getEvictions() + ",\"size\":" + stats.getSize()
+                + ",\"capacity\":" + stats.getCapacity() + "}\n");
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendJson(String.valueOf(message), json);
+        respond(exchange, status, "application/json", json.append("}\n").toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer: " + name + "=" + value);
+        }
+    }
+
+    private static long longParameter(Map<String, String> query, String name) {
+        String value = query.get(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer: " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Appends a JSON string literal, escaping quotes, backslashes, control characters and unpaired surrogates.
+     */
+    private static void appendJson(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20 || Character.isSurrogate(c) && !isPaired(value, i)) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean isPaired(String value, int index) {
+        char c = value.charAt(index);
+        return Character.isHighSurrogate(c)
+                ? index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))
+                : index > 0 && Character.isHighSurrogate(value.charAt(index - 1));
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@link Flow.Publisher} counterpart of {@link XegerPublisher}, with the same demand-driven batching and
+ * guarantees, but without the Reactive Streams dependency. Only available on Java 9 and later, from the versioned
+ * part of the multi-release jar.
+ */
+public final class XegerFlowPublisher implements Flow.Publisher<String> {
+
+    private final XegerPattern pattern;
+    private final Executor executor;
+    private final int batchSize;
+
+    /**
+     * Creates a publisher generating on the common {@link ForkJoinPool}.
+     *
+     * @param pattern The pattern of the values. (Not <code>null</code>.)
+     */
+    public XegerFlowPublisher(XegerPattern pattern) {
+        this(pattern, ForkJoinPool.commonPool(), XegerPublisher.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param pattern   The pattern of the values. (Not <code>null</code>.)
+     * @param executor  Runs the generation and delivers the signals. (Not <code>null</code>.)
+     * @param batchSize The most values generated at once, however large the demand.
+     * @throws IllegalArgumentException If {@code batchSize} is not positive.
+     */
+    public XegerFlowPublisher(XegerPattern pattern, Executor executor, int batchSize) {
+        assert pattern != null;
+        assert executor != null;
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.pattern = pattern;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Rule 1.9: subscriber must not be null");
+        }
+        subscriber.onSubscribe(new FlowSubscription(subscriber));
+    }
+
+    private final class FlowSubscription extends GeneratorSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super String> subscriber;
+
+        FlowSubscription(Flow.Subscriber<? super String> subscriber) {
+            super(pattern, pattern.getConfig().getRandomSupplier().get(), executor, batchSize);
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        void onNext(String value) {
+            subscriber.onNext(value);
+        }
+
+        @Override
+        void onError(Throwable error) {
+            subscriber.onError(error);
+        }
+    }
+}
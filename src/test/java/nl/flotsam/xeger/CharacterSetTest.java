@@ -76,6 +76,63 @@ public class CharacterSetTest {
         assertThat((int) cs.clampMin((char) 0x41)).isEqualTo(0x41); // 'A' unchanged
     }
 
+    @Test
+    public void unionMergesOverlappingAndAdjacentRanges() {
+        CharacterSet cs = CharacterSet.of('a', 'f').union(CharacterSet.of('0', '9'))
+                .union(CharacterSet.of('d', 'k')).union(CharacterSet.of('l', 'm'));
+        assertThat(cs).isEqualTo(CharacterSet.of('0', '9').union(CharacterSet.of('a', 'm')));
+        assertThat(cs.getRangeCount()).isEqualTo(2);
+        assertThat(cs.contains('5')).isTrue();
+        assertThat(cs.contains('m')).isTrue();
+        assertThat(cs.contains(':')).isFalse();
+        assertThat(cs.contains('n')).isFalse();
+        assertThat(cs.getMin()).isEqualTo('0');
+        assertThat(cs.getMax()).isEqualTo('m');
+    }
+
+    @Test
+    public void intersectAndComplement() {
+        CharacterSet hex = CharacterSet.DIGITS.union(CharacterSet.of('a', 'f')).union(CharacterSet.of('A', 'F'));
+        assertThat(hex.intersect(CharacterSet.LETTERS)).isEqualTo(CharacterSet.anyOf("abcdefABCDEF"));
+        assertThat(hex.complement().complement()).isEqualTo(hex);
+        assertThat(hex.complement().contains('g')).isTrue();
+        assertThat(hex.complement().contains('7')).isFalse();
+        assertThat(CharacterSet.PUNCTUATION.contains('!')).isTrue();
+        assertThat(CharacterSet.PUNCTUATION.contains('~')).isTrue();
+        assertThat(CharacterSet.PUNCTUATION.contains('a')).isFalse();
+        assertThat(CharacterSet.PUNCTUATION.contains(' ')).isFalse();
+        assertThat(CharacterSet.PUNCTUATION.getRangeCount()).isEqualTo(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intersectRejectsDisjointSets() {
+        CharacterSet.DIGITS.intersect(CharacterSet.LETTERS);
+    }
+
+    @Test
+    public void clampSkipsGapsBetweenRanges() {
+        CharacterSet cs = CharacterSet.anyOf("aeiou");
+        assertThat(cs.clampMin('b')).isEqualTo('e');
+        assertThat(cs.clampMax('h')).isEqualTo('e');
+        assertThat(cs.overlaps('f', 'h')).isFalse();
+        assertThat(cs.overlaps('f', 'i')).isTrue();
+        assertThat((int) cs.clampMin('v')).isEqualTo(0xFFFF);
+        assertThat(cs.lowestFrom('v')).isEqualTo(-1);
+    }
+
+    @Test
+    public void topOfTheRangeIsARealCharacter() {
+        assertThat(CharacterSet.UNICODE.overlaps('\uFFFF', '\uFFFF')).isTrue();
+        assertThat(CharacterSet.UNICODE.clampMin('\uFFFF')).isEqualTo('\uFFFF');
+        assertThat(CharacterSet.UNICODE.clampMax('\uFFFF')).isEqualTo('\uFFFF');
+        assertThat(CharacterSet.UNICODE.lowestFrom('\uFFFF')).isEqualTo(0xFFFF);
+        CharacterSet top = CharacterSet.of('\uFFF0', '\uFFFF');
+        assertThat(top.overlaps('\uFFFF', '\uFFFF')).isTrue();
+        assertThat(top.overlaps('a', '\uFFFF')).isTrue();
+        assertThat(top.overlaps('a', 'z')).isFalse();
+        assertThat(CharacterSet.of('a', 'z').overlaps('\uFFFF', '\uFFFF')).isFalse();
+    }
+
     // --- Integration tests: Xeger + CharacterSet ---
 
     @Test
@@ -122,4 +179,13 @@ public class CharacterSetTest {
             assertThat(s).matches("[0-9]+");
         }
     }
+
+    @Test
+    public void multiRangeCharsetConstrainsOutput() {
+        CharacterSet allowed = CharacterSet.DIGITS.union(CharacterSet.anyOf("xyz-"));
+        Xeger xeger = new Xeger(".{8}", new java.util.Random(42), allowed);
+        for (int i = 0; i < 100; i++) {
+            assertThat(xeger.generate()).matches("[0-9xyz-]{8}");
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class DeterminizerTest {
+
+    @Test
+    public void budgetedCompilationBuildsTheSameTable() {
+        String[] regexes = {"[a-z]{3}", "(a|b)*a(a|b){4}", "[0-9]{2,4}-x?", "a(bc|d)*e?", "[a-c]+&~(.*aa.*)",
+                "x<1-250>", "(\"x\"|y)+", "#|()", ".{0,20}"};
+        for (String regex : regexes) {
+            GenerationTable plain = GenerationTable.compile(regex, CharacterSet.UNICODE);
+            GenerationTable budgeted = GenerationTable.compile(regex, CharacterSet.UNICODE, 100000, 10000);
+            assertThat(budgeted.accept).as(regex).isEqualTo(plain.accept);
+            assertThat(budgeted.transitionStart).as(regex).isEqualTo(plain.transitionStart);
+            assertThat(budgeted.min).as(regex).isEqualTo(plain.min);
+            assertThat(budgeted.max).as(regex).isEqualTo(plain.max);
+            assertThat(budgeted.dest).as(regex).isEqualTo(plain.dest);
+        }
+    }
+
+    @Test
+    public void budgetedPatternsGenerateTheSameValues() {
+        XegerConfig budget = XegerConfig.builder().maxStates(1000).compileTimeoutMillis(5000).build();
+        XegerPattern budgeted = XegerPattern.compile("[A-Z]{2}(-[0-9]{1,3})+", budget);
+        Xeger reference = new Xeger("[A-Z]{2}(-[0-9]{1,3})+", new Random(5));
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            assertThat(budgeted.generate(random)).isEqualTo(reference.generate());
+        }
+    }
+
+    @Test
+    public void stateExplosionFailsWithinBudget() {
+        XegerConfig budget = XegerConfig.builder().maxStates(5000).build();
+        try {
+            XegerPattern.compile("(a|b)*a(a|b){25}", budget);
+            fail("expected the state budget to run out");
+        } catch (PatternTooComplexException e) {
+            assertThat(e.getReason()).isEqualTo(PatternTooComplexException.Reason.STATES);
+            assertThat(e.getStates()).isEqualTo(5000);
+            assertThat(e.getRegex()).isEqualTo("(a|b)*a(a|b){25}");
+        }
+    }
+
+    @Test
+    public void slowCompilationFailsWithinBudget() {
+        XegerConfig budget = XegerConfig.builder().compileTimeoutMillis(50).build();
+        long start = System.nanoTime();
+        try {
+            Xeger.analyze("(a|b)*a(a|b){25}", budget);
+            fail("expected the time budget to run out");
+        } catch (PatternTooComplexException e) {
+            assertThat(e.getReason()).isEqualTo(PatternTooComplexException.Reason.TIME);
+            assertThat(e.getElapsedMillis()).isGreaterThanOrEqualTo(50);
+        }
+        assertThat((System.nanoTime() - start) / 1000000).isLessThan(5000);
+    }
+
+    @Test
+    public void missingRegExpFieldsFailClearly() {
+        try {
+            Determinizer.Fields.of(Object.class);
+            fail("expected the lookup to fail");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("Cannot compile within a budget")
+                    .contains("java.lang.Object field kind");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndefinedNamedAutomata() {
+        GenerationTable.compile("a<name>", CharacterSet.UNICODE, 100, 0);
+    }
+}
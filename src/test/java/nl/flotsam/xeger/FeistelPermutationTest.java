@@ -0,0 +1,74 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FeistelPermutationTest {
+
+    @Test
+    public void permutesSmallDomains() {
+        for (int size = 1; size <= 300; size++) {
+            FeistelPermutation permutation = new FeistelPermutation(BigInteger.valueOf(size), size * 31L);
+            BitSet seen = new BitSet(size);
+            for (long i = 0; i < size; i++) {
+                long value = permutation.apply(i);
+                assertThat(value).isGreaterThanOrEqualTo(0).isLessThan(size);
+                seen.set((int) value);
+            }
+            assertThat(seen.cardinality()).isEqualTo(size);
+        }
+    }
+
+    @Test
+    public void differentSeedsGiveDifferentOrders() {
+        FeistelPermutation first = new FeistelPermutation(BigInteger.valueOf(1000000), 1);
+        FeistelPermutation second = new FeistelPermutation(BigInteger.valueOf(1000000), 2);
+        int same = 0;
+        for (long i = 0; i < 100; i++) {
+            if (first.apply(i) == second.apply(i)) {
+                same++;
+            }
+        }
+        assertThat(same).isLessThan(5);
+        assertThat(first.apply(0)).isEqualTo(new FeistelPermutation(BigInteger.valueOf(1000000), 1).apply(0));
+    }
+
+    @Test
+    public void handlesDomainsBeyondLong() {
+        BigInteger size = BigInteger.valueOf(65536).pow(10);
+        FeistelPermutation permutation = new FeistelPermutation(size, 7);
+        assertThat(permutation.isLong()).isFalse();
+        Set<BigInteger> seen = new HashSet<BigInteger>();
+        for (long i = 0; i < 1000; i++) {
+            BigInteger value = permutation.apply(BigInteger.valueOf(i));
+            assertThat(value.signum()).isGreaterThanOrEqualTo(0);
+            assertThat(value.compareTo(size)).isLessThan(0);
+            seen.add(value);
+        }
+        assertThat(seen).hasSize(1000);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GeneratedBatchTest {
+
+    @Test
+    public void batchMatchesIndividualGeneration() {
+        XegerPattern pattern = XegerPattern.compile("[a-z]{1,12}@[0-9]{2}");
+        GeneratedBatch batch = pattern.generateBatch(new Random(3), 5000);
+        Random reference = new Random(3);
+        assertThat(batch.size()).isEqualTo(5000);
+        for (int i = 0; i < batch.size(); i++) {
+            String expected = pattern.generate(reference);
+            assertThat(batch.get(i)).isEqualTo(expected);
+            assertThat(batch.length(i)).isEqualTo(expected.length());
+            assertThat(batch.view(i).toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void valuesArePackedBackToBack() {
+        GeneratedBatch batch = new Xeger("[0-9]{3}", new Random(1)).generateBatch(4);
+        for (int i = 1; i < batch.size(); i++) {
+            assertThat(batch.start(i)).isEqualTo(batch.end(i - 1));
+        }
+        assertThat(new String(batch.data(), 0, batch.end(3))).matches("[0-9]{12}");
+    }
+
+    @Test
+    public void appendToAndListView() throws IOException {
+        GeneratedBatch batch = new Xeger("[A-Z]{2}", new Random(1)).generateBatch(3);
+        StringBuilder builder = new StringBuilder();
+        StringWriter writer = new StringWriter();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.appendTo(i, builder);
+            batch.appendTo(i, writer);
+        }
+        assertThat(builder.toString()).isEqualTo(writer.toString());
+        assertThat(String.join("", batch.asList())).isEqualTo(builder.toString());
+    }
+
+    @Test
+    public void emptyBatch() {
+        assertThat(new Xeger("a").generateBatch(0).size()).isEqualTo(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexOutsideBatch() {
+        new Xeger("a").generateBatch(2).get(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeCount() {
+        new Xeger("a").generateBatch(-1);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import dk.brics.automaton.RegExp;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GenerationTableTest {
+
+    @Test
+    public void compilesStatesAndTransitionsIntoFlatArrays() {
+        GenerationTable table = GenerationTable.compile(new RegExp("a[b-d]").toAutomaton(), CharacterSet.UNICODE);
+        assertThat(table.stateCount).isEqualTo(3);
+        assertThat(table.accept[0]).isFalse();
+        assertThat(table.totalWeight(0)).isEqualTo(1);
+        int second = table.dest[table.transitionStart[0]];
+        assertThat(table.totalWeight(second)).isEqualTo(3);
+        assertThat(table.accept[table.dest[table.transitionStart[second]]]).isTrue();
+    }
+
+    @Test
+    public void clampsTransitionsToCharacterSet() {
+        GenerationTable table = GenerationTable.compile(new RegExp("[0-9a-z]").toAutomaton(), CharacterSet.of('5', 'c'));
+        int from = table.transitionStart[0];
+        assertThat(table.transitionStart[1] - from).isEqualTo(2);
+        assertThat(table.min[from]).isEqualTo('5');
+        assertThat(table.max[from]).isEqualTo('9');
+        assertThat(table.min[from + 1]).isEqualTo('a');
+        assertThat(table.max[from + 1]).isEqualTo('c');
+        assertThat(table.cumulativeWeight[from + 1]).isEqualTo(8);
+    }
+
+    @Test
+    public void dropsTransitionsOutsideCharacterSet() {
+        GenerationTable table = GenerationTable.compile(new RegExp("[0-9]|[a-z]").toAutomaton(), CharacterSet.of('a', 'z'));
+        assertThat(table.transitionStart[1] - table.transitionStart[0]).isEqualTo(1);
+        assertThat(table.totalWeight(0)).isEqualTo(26);
+    }
+
+    @Test
+    public void escapedLoopsStayWithinCharacterSet() {
+        Xeger xeger = new Xeger("(foo|bar|baz)*x?", new Random(7), CharacterSet.of('a', 'e'));
+        for (int i = 0; i < 100; i++) {
+            for (char c : xeger.generate().toCharArray()) {
+                assertThat((int) c).isBetween((int) 'a', (int) 'e');
+            }
+        }
+    }
+
+    @Test
+    public void aliasTablesReproduceTransitionWeightsExactly() {
+        String[] regexes = {"[a-c]|[d-z]|0|[1-9]", "[^abc]", "(alpha|bravo|charlie|delta|echo)[0-9]", ".", "x"};
+        for (String regex : regexes) {
+            GenerationTable table = GenerationTable.compile(new RegExp(regex).toAutomaton(), CharacterSet.UNICODE);
+            for (int s = 0; s < table.stateCount; s++) {
+                int from = table.transitionStart[s];
+                int n = table.transitionStart[s + 1] - from;
+                long total = table.totalWeight(s);
+                long[] share = new long[n];
+                for (int i = from; i < from + n; i++) {
+                    share[i - from] += table.aliasThreshold[i];
+                    share[table.alias[i] - from] += total - table.aliasThreshold[i];
+                }
+                for (int k = 0; k < n; k++) {
+                    assertThat(share[k]).as(regex + " state " + s).isEqualTo((long) table.weight(from + k) * n);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pickFollowsWeights() {
+        GenerationTable table = GenerationTable.compile(new RegExp("a|[c-e]").toAutomaton(), CharacterSet.UNICODE);
+        Random random = new Random(42);
+        int first = table.transitionStart[0];
+        int picksOfA = 0;
+        for (int i = 0; i < 40000; i++) {
+            if (table.pick(0, random) == first) {
+                picksOfA++;
+            }
+        }
+        assertThat(picksOfA).isBetween(9000, 11000);
+    }
+
+    @Test
+    public void findsLongestMatch() {
+        assertThat(GenerationTable.compile("ab{2,5}c?", CharacterSet.UNICODE).longestMatch()).isEqualTo(7);
+        assertThat(GenerationTable.compile("a{3000}", CharacterSet.UNICODE).longestMatch()).isEqualTo(3000);
+        assertThat(GenerationTable.compile("a(bc)*", CharacterSet.UNICODE).longestMatch()).isEqualTo(-1);
+        // the cycle is unreachable once the character set drops its only entry
+        assertThat(GenerationTable.compile("ab|c[x]*", CharacterSet.of('a', 'c')).longestMatch()).isEqualTo(2);
+    }
+
+    @Test
+    public void computesDistanceToAccept() {
+        GenerationTable table = GenerationTable.compile("(ab)*cde|x", CharacterSet.UNICODE);
+        assertThat(table.distance[0]).isEqualTo(1);
+        int viaX = table.shortest[0];
+        assertThat(table.min[viaX]).isEqualTo('x');
+        assertThat(GenerationTable.compile("a*b{4}", CharacterSet.UNICODE).distance[0]).isEqualTo(4);
+        assertThat(GenerationTable.compile(new RegExp("[a-c]").toAutomaton(), CharacterSet.of('x', 'z')).distance[0])
+                .isEqualTo(GenerationTable.UNREACHABLE);
+    }
+
+    @Test
+    public void intersectsWithCharacterSet() {
+        GenerationTable table = GenerationTable.compile("[a-z]+[0-9]|x", CharacterSet.of('0', 'f'));
+        for (int t = 0; t < table.dest.length; t++) {
+            assertThat((int) table.min[t]).isGreaterThanOrEqualTo('0');
+            assertThat((int) table.max[t]).isLessThanOrEqualTo('f');
+            assertThat(table.distance[table.dest[t]]).isNotEqualTo(GenerationTable.UNREACHABLE);
+        }
+        assertThat(table.distance[0]).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLanguageOutsideCharacterSet() {
+        GenerationTable.compile("[^ -~]", CharacterSet.PRINTABLE_ASCII);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LengthTableTest {
+
+    @Test
+    public void reportsExactLengthsOfFixedPattern() {
+        LengthTable lengths = GenerationTable.compile("abc", CharacterSet.UNICODE).lengths(10);
+        assertThat(lengths.canFinish(0, 3, 3)).isTrue();
+        assertThat(lengths.canFinish(0, 0, 2)).isFalse();
+        assertThat(lengths.canFinish(0, 4, 10)).isFalse();
+    }
+
+    @Test
+    public void reportsEvenLengthsOfRepeatedPair() {
+        LengthTable lengths = GenerationTable.compile("(ab)+", CharacterSet.UNICODE).lengths(200);
+        for (int r = 0; r <= 200; r++) {
+            assertThat(lengths.canFinish(0, r, r)).isEqualTo(r > 0 && r % 2 == 0);
+        }
+        assertThat(lengths.canFinish(0, 63, 65)).isTrue();
+        assertThat(lengths.canFinish(0, 127, 127)).isFalse();
+    }
+
+    @Test
+    public void neverReportsLengthsBeyondTheCap() {
+        LengthTable lengths = GenerationTable.compile("a{70}", CharacterSet.UNICODE).lengths(64);
+        assertThat(lengths.canFinish(0, 0, 100)).isFalse();
+        assertThat(GenerationTable.compile("a{70}", CharacterSet.UNICODE).lengths(100).canFinish(0, 0, 100)).isTrue();
+    }
+
+    @Test
+    public void growsWhenALargerCapIsRequested() {
+        GenerationTable table = GenerationTable.compile("[a-z]*", CharacterSet.UNICODE);
+        LengthTable small = table.lengths(10);
+        assertThat(table.lengths(5)).isSameAs(small);
+        assertThat(table.lengths(100).cap).isEqualTo(100);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PathCountTableTest {
+
+    @Test
+    public void countsStringsPerLength() {
+        PathCountTable counts = GenerationTable.compile("[a-c]*d?", CharacterSet.UNICODE).pathCounts(5);
+        assertThat(counts.isBig()).isFalse();
+        assertThat(counts.count(0, 0)).isEqualTo(BigInteger.ONE);
+        // 3^r strings without the trailing d, plus 3^(r-1) with it
+        assertThat(counts.count(0, 3)).isEqualTo(BigInteger.valueOf(27 + 9));
+        assertThat(counts.countBetween(0, 2)).isEqualTo(BigInteger.valueOf(1 + (3 + 1) + (9 + 3)));
+        assertThat(counts.countBetween(3, 2)).isEqualTo(BigInteger.ZERO);
+    }
+
+    @Test
+    public void fallsBackToBigIntegerOnOverflow() {
+        PathCountTable counts = GenerationTable.compile(".*", CharacterSet.UNICODE).pathCounts(10);
+        assertThat(counts.isBig()).isTrue();
+        assertThat(counts.count(0, 10)).isEqualTo(BigInteger.valueOf(65536).pow(10));
+        char[] buffer = new char[10];
+        assertThat(counts.sample(new Random(1), 10, 10, buffer, 0)).isEqualTo(10);
+    }
+
+    @Test
+    public void countsLargeBoundsWithoutTheTable() {
+        XegerPattern pattern = XegerPattern.compile(".{1,5000}");
+        // 65536 + 65536^2 + ... + 65536^5000
+        BigInteger expected = BigInteger.valueOf(65536).pow(5001).subtract(BigInteger.valueOf(65536))
+                .divide(BigInteger.valueOf(65535));
+        assertThat(pattern.count()).isEqualTo(expected);
+        try {
+            pattern.unrank(0);
+            fail("expected the table to be refused");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("5001 states").contains("more than the " + PathCountTable.MAX_CELLS);
+        }
+    }
+
+    @Test
+    public void refusesTablesOfHugeCounts() {
+        GenerationTable table = GenerationTable.compile(".{1,2000}", CharacterSet.UNICODE);
+        try {
+            table.pathCounts(2000);
+            fail("expected the table to be refused");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("bits of counts");
+        }
+    }
+
+    @Test
+    public void samplesUniformlyWithinWindow() {
+        PathCountTable counts = GenerationTable.compile("[ab]{0,2}", CharacterSet.UNICODE).pathCounts(2);
+        Map<String, Integer> seen = new HashMap<String, Integer>();
+        Random random = new Random(3);
+        char[] buffer = new char[2];
+        for (int i = 0; i < 70000; i++) {
+            String value = new String(buffer, 0, counts.sample(random, 0, 2, buffer, 0));
+            Integer previous = seen.get(value);
+            seen.put(value, previous == null ? 1 : previous + 1);
+        }
+        assertThat(seen).hasSize(7);
+        for (int frequency : seen.values()) {
+            assertThat(frequency).isGreaterThan(9400).isLessThan(10600);
+        }
+    }
+
+    @Test
+    public void boundedLongDrawsStayInRange() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(PathCountTable.nextLong(random, 7)).isGreaterThanOrEqualTo(0).isLessThan(7);
+            assertThat(PathCountTable.nextLong(random, 1L << 40)).isGreaterThanOrEqualTo(0).isLessThan(1L << 40);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternAnalysisTest {
+
+    @Test
+    public void reportsFiniteLanguage() {
+        PatternAnalysis analysis = Xeger.analyze("[0-9]{2,4}-x?");
+        assertThat(analysis.getStateCount()).isEqualTo(7);
+        assertThat(analysis.getTransitionCount()).isEqualTo(8);
+        assertThat(analysis.getMinLength()).isEqualTo(3);
+        assertThat(analysis.getMaxLength()).isEqualTo(6);
+        assertThat(analysis.isFinite()).isTrue();
+        // (100 + 1000 + 10000) numbers, each with or without the x
+        assertThat(analysis.getLanguageSize()).isEqualTo(BigInteger.valueOf(22200));
+        assertThat(analysis.getLanguageSize()).isEqualTo(XegerPattern.compile("[0-9]{2,4}-x?").count());
+    }
+
+    @Test
+    public void reportsInfiniteLanguage() {
+        PatternAnalysis analysis = Xeger.analyze("a(bc|d)*e?");
+        assertThat(analysis.getMinLength()).isEqualTo(1);
+        assertThat(analysis.getMaxLength()).isEqualTo(-1);
+        assertThat(analysis.isFinite()).isFalse();
+        assertThat(analysis.getLanguageSize()).isNull();
+        assertThat(analysis.toString()).contains("maxLength=infinite");
+    }
+
+    @Test
+    public void countsHugeLanguagesExactly() {
+        PatternAnalysis analysis = Xeger.analyze("[a-z]{1,500}", XegerConfig.builder().maxStates(1000).build());
+        assertThat(analysis.getStateCount()).isEqualTo(501);
+        BigInteger expected = BigInteger.ZERO;
+        for (int length = 1; length <= 500; length++) {
+            expected = expected.add(BigInteger.valueOf(26).pow(length));
+        }
+        assertThat(analysis.getLanguageSize()).isEqualTo(expected);
+    }
+
+    @Test
+    public void appliesCharacterSet() {
+        PatternAnalysis analysis = Xeger.analyze(".{2}", XegerConfig.builder().characterSet(CharacterSet.DIGITS)
+                .build());
+        assertThat(analysis.getCharacterSet()).isEqualTo(CharacterSet.DIGITS);
+        assertThat(analysis.getLanguageSize()).isEqualTo(BigInteger.valueOf(100));
+    }
+
+    @Test
+    public void reportsEmptyLanguage() {
+        PatternAnalysis analysis = Xeger.analyze("[a-z]+", XegerConfig.builder().characterSet(CharacterSet.DIGITS)
+                .maxStates(1000).build());
+        assertThat(analysis.getLanguageSize()).isEqualTo(BigInteger.ZERO);
+        assertThat(analysis.isFinite()).isTrue();
+        assertThat(analysis.getMinLength()).isEqualTo(-1);
+        assertThat(analysis.getMaxLength()).isEqualTo(-1);
+        assertThat(analysis.getTransitionCount()).isEqualTo(0);
+        assertThat(Xeger.analyze("a&b").getLanguageSize()).isEqualTo(BigInteger.ZERO);
+    }
+
+    @Test
+    public void doesNotFillTheCache() {
+        long misses = Xeger.cacheStats().getMisses();
+        Xeger.analyze("q{3}z[0-9]");
+        assertThat(Xeger.cacheStats().getMisses()).isEqualTo(misses);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PatternBundleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadedPatternsMatchCompiledOnesForSameSeed() throws IOException {
+        List<String> regexes = Arrays.asList("[ab]{4,6}c", "(abc|d)*x", "[0-9]{3}-[a-z]+", "[ab]{4,6}c");
+        Path path = folder.newFile("patterns.xgb").toPath();
+        PatternBundle.write(path, regexes, CharacterSet.UNICODE);
+        PatternBundle bundle = Xeger.loadBundle(path);
+        assertThat(bundle.size()).isEqualTo(4);
+        assertThat(bundle.getRegexes()).isEqualTo(regexes);
+        for (String regex : regexes) {
+            Xeger loaded = bundle.pattern(regex).generator(new Random(1000));
+            Xeger reference = XegerPattern.compile(regex).generator(new Random(1000));
+            for (int i = 0; i < 100; i++) {
+                assertThat(loaded.generate()).isEqualTo(reference.generate());
+            }
+        }
+    }
+
+    @Test
+    public void decodesPatternsOnceOnFirstUse() throws IOException {
+        Path path = folder.newFile("patterns.xgb").toPath();
+        PatternBundle.write(path, Arrays.asList("a+", "b+"), CharacterSet.UNICODE);
+        PatternBundle bundle = PatternBundle.load(path);
+        assertThat(bundle.pattern(1)).isSameAs(bundle.pattern("b+"));
+        assertThat(bundle.pattern(0).getRegex()).isEqualTo("a+");
+    }
+
+    @Test
+    public void preservesMultiRangeCharacterSet() throws IOException {
+        CharacterSet characterSet = CharacterSet.DIGITS.union(CharacterSet.UPPERCASE);
+        Path path = folder.newFile("patterns.xgb").toPath();
+        PatternBundle.write(path, Arrays.asList("\\w{8}"), characterSet);
+        XegerPattern pattern = PatternBundle.load(path, XegerConfig.builder().maxLoops(3).build()).pattern(0);
+        assertThat(pattern.getCharacterSet()).isEqualTo(characterSet);
+        assertThat(pattern.getConfig().getMaxLoops()).isEqualTo(3);
+        assertThat(pattern.generate(new Random(5))).matches("[0-9A-Z]{8}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownRegex() throws IOException {
+        Path path = folder.newFile("patterns.xgb").toPath();
+        PatternBundle.write(path, Arrays.asList("a+"), CharacterSet.UNICODE);
+        PatternBundle.load(path).pattern("b+");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesWithoutMagic() throws IOException {
+        Path path = folder.newFile("patterns.txt").toPath();
+        Files.write(path, "[a-z]+\n[0-9]+\nnot a bundle at all\n".getBytes("UTF-8"));
+        PatternBundle.load(path);
+    }
+
+    @Test
+    public void writeRejectsBundlesOverTheSizeLimit() throws IOException {
+        List<String> regexes = Arrays.asList("[a-z]{3}", "(abc|d)*x");
+        Path path = folder.getRoot().toPath().resolve("limit.xgb");
+        PatternBundle.write(path, regexes, CharacterSet.UNICODE);
+        long size = Files.size(path);
+        PatternBundle.write(path, regexes, CharacterSet.UNICODE, size);
+        assertThat(PatternBundle.load(path).size()).isEqualTo(2);
+        try {
+            PatternBundle.write(path, regexes, CharacterSet.UNICODE, size - 1);
+            fail("expected the size limit to be exceeded");
+        } catch (IOException expected) {
+            assertThat(expected.getMessage()).contains(String.valueOf(size - 1));
+        }
+        assertThat(Files.exists(path)).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writeRejectsInvalidRegex() throws IOException {
+        PatternBundle.write(folder.newFile("patterns.xgb").toPath(), Arrays.asList("a+", "a||b("),
+                CharacterSet.UNICODE);
+    }
+}
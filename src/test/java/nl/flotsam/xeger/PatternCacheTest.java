@@ -0,0 +1,82 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternCacheTest {
+
+    @Test
+    public void countsHitsAndMisses() {
+        PatternCache cache = new PatternCache(4);
+        GenerationTable first = cache.get("[a-z]{3}", CharacterSet.UNICODE);
+        GenerationTable second = cache.get("[a-z]{3}", CharacterSet.UNICODE);
+        assertThat(second).isSameAs(first);
+        CacheStats stats = cache.stats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void keysIncludeCharacterSet() {
+        PatternCache cache = new PatternCache(4);
+        GenerationTable unicode = cache.get(".", CharacterSet.UNICODE);
+        GenerationTable ascii = cache.get(".", CharacterSet.ASCII);
+        assertThat(ascii).isNotSameAs(unicode);
+        assertThat(cache.get(".", CharacterSet.of('\u0000', '\u007F'))).isSameAs(ascii);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PatternCache cache = new PatternCache(2);
+        GenerationTable a = cache.get("a", CharacterSet.UNICODE);
+        cache.get("b", CharacterSet.UNICODE);
+        cache.get("a", CharacterSet.UNICODE);
+        cache.get("c", CharacterSet.UNICODE); // evicts "b"
+        assertThat(cache.get("a", CharacterSet.UNICODE)).isSameAs(a);
+        cache.get("b", CharacterSet.UNICODE);
+        CacheStats stats = cache.stats();
+        assertThat(stats.getEvictions()).isEqualTo(2);
+        assertThat(stats.getMisses()).isEqualTo(4);
+        assertThat(stats.getSize()).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRegex() {
+        new PatternCache(2).get("a||b(", CharacterSet.UNICODE);
+    }
+
+    @Test
+    public void compiledInstancesShareAutomatonButNotRandom() {
+        Xeger first = Xeger.compile("[ab]{4,6}c", new Random(1000), CharacterSet.UNICODE);
+        Xeger second = Xeger.compile("[ab]{4,6}c", new Random(1000), CharacterSet.UNICODE);
+        Xeger reference = new Xeger("[ab]{4,6}c", new Random(1000));
+        assertThat(Xeger.cacheStats().getHits()).isGreaterThanOrEqualTo(1);
+        for (int i = 0; i < 100; i++) {
+            String expected = reference.generate();
+            assertThat(first.generate()).isEqualTo(expected);
+            assertThat(second.generate()).isEqualTo(expected);
+        }
+    }
+}
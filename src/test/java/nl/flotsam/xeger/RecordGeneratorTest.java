@@ -0,0 +1,104 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecordGeneratorTest {
+
+    private static final XegerConfig CONFIG = XegerConfig.builder().maxLoops(8).maxGeneratedLength(100).build();
+
+    @Test
+    public void generatesColumnarBatches() {
+        RecordGenerator records = RecordGenerator.builder()
+                .column("id", "[A-Z]{3}-[0-9]{4}")
+                .column("n", "[0-9]{1,3}")
+                .config(CONFIG)
+                .build();
+        assertThat(records.getColumnNames()).containsExactly("id", "n");
+        RecordBatch batch = records.generateBatch(new Random(1), 50);
+        assertThat(batch.getRowCount()).isEqualTo(50);
+        assertThat(batch.getColumnCount()).isEqualTo(2);
+        assertThat(batch.getColumn(1).size()).isEqualTo(50);
+        for (int row = 0; row < 50; row++) {
+            assertThat(batch.get(row, 0)).matches("[A-Z]{3}-[0-9]{4}");
+            assertThat(batch.get(row, 1)).matches("[0-9]{1,3}");
+        }
+    }
+
+    @Test
+    public void writesCsvWithHeaderAndQuoting() throws IOException {
+        RecordGenerator records = RecordGenerator.builder()
+                .column("plain", "abc")
+                .column("needs \"quotes\"", "x,\\\"y\\\"")
+                .column("line", "a\nb")
+                .config(CONFIG)
+                .build();
+        StringBuilder out = new StringBuilder();
+        records.write(out, RecordGenerator.Format.CSV, 2, 7, 1);
+        assertThat(out.toString()).isEqualTo("plain,\"needs \"\"quotes\"\"\",line\n"
+                + "abc,\"x,\"\"y\"\"\",\"a\nb\"\n"
+                + "abc,\"x,\"\"y\"\"\",\"a\nb\"\n");
+    }
+
+    @Test
+    public void writesJsonLinesWithEscaping() throws IOException {
+        RecordGenerator records = RecordGenerator.builder()
+                .column("q", "\\\"\\\\\t\u0001")
+                .column("pair", "\uD83D\uDE00")
+                .column("lone", "\uD800")
+                .config(CONFIG)
+                .build();
+        StringBuilder out = new StringBuilder();
+        records.write(out, RecordGenerator.Format.JSONL, 1, 7, 1);
+        assertThat(out.toString())
+                .isEqualTo("{\"q\":\"\\\"\\\\\\t\\u0001\",\"pair\":\"\uD83D\uDE00\",\"lone\":\"\\ud800\"}\n");
+    }
+
+    @Test
+    public void outputDoesNotDependOnThreads() throws IOException {
+        RecordGenerator records = RecordGenerator.builder()
+                .column("id", "[A-Z]{3}-[0-9]{6}")
+                .column("email", "[a-z]{4,10}@example\\.(com|org)")
+                .config(CONFIG)
+                .build();
+        StringBuilder single = new StringBuilder();
+        StringBuilder parallel = new StringBuilder();
+        long rows = 3 * RecordGenerator.BATCH_SIZE + 17;
+        records.write(single, RecordGenerator.Format.JSONL, rows, 42, 1);
+        records.write(parallel, RecordGenerator.Format.JSONL, rows, 42, 4);
+        assertThat(parallel.toString()).isEqualTo(single.toString());
+        assertThat(single.toString().split("\n")).hasSize((int) rows);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateColumns() {
+        RecordGenerator.builder().column("a", "x").column("a", "y");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidColumnRegex() {
+        RecordGenerator.builder().column("a", "a||b(").build();
+    }
+}
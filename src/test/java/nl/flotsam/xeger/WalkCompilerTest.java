@@ -0,0 +1,86 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WalkCompilerTest {
+
+    private static final String[] REGEXES = {"[A-Z]{3}-[0-9]{6}", "[a-z]*", "(abc|d)*x", "a+b+c+", "((ab)*c)*de{3}",
+            "[0-9a-fA-F]{8}(-[0-9a-f]{4}){3}", "(foo|bar|baz)?[xyz]+", ".{2,5}", "\\w+@\\w+\\.(com|org)", ""};
+
+    @Test
+    public void specializedWalkMatchesInterpreterForSameSeed() {
+        XegerConfig interpreted = XegerConfig.builder().maxLoops(8).maxGeneratedLength(100).build();
+        XegerConfig specialized = interpreted.toBuilder().specialized(true).build();
+        for (String regex : REGEXES) {
+            XegerPattern reference = XegerPattern.compile(regex, interpreted);
+            XegerPattern pattern = XegerPattern.compile(regex, specialized);
+            Random expected = new Random(17);
+            Random actual = new Random(17);
+            for (int i = 0; i < 500; i++) {
+                assertThat(pattern.generate(actual)).isEqualTo(reference.generate(expected));
+            }
+            assertThat(actual.nextLong()).isEqualTo(expected.nextLong());
+        }
+    }
+
+    @Test
+    public void specializedWalkSteersWithinTheSpaceAvailable() {
+        XegerConfig interpreted = XegerConfig.builder().maxLoops(8).maxGeneratedLength(100).build();
+        XegerConfig specialized = interpreted.toBuilder().specialized(true).build();
+        for (String regex : new String[]{"(abc|d)*x", "[a-z]*[0-9]{5}", "a+b+c+"}) {
+            XegerPattern reference = XegerPattern.compile(regex, interpreted);
+            XegerPattern pattern = XegerPattern.compile(regex, specialized);
+            Random expected = new Random(3);
+            Random actual = new Random(3);
+            for (int i = 0; i < 500; i++) {
+                char[] referenceDest = new char[7];
+                char[] dest = new char[7];
+                int length = pattern.generateInto(actual, dest, 0);
+                assertThat(length).isEqualTo(reference.generateInto(expected, referenceDest, 0));
+                assertThat(new String(dest, 0, length)).isEqualTo(new String(referenceDest, 0, length))
+                        .matches(regex);
+            }
+        }
+    }
+
+    @Test
+    public void largeAutomataFallBackToTheInterpreter() {
+        assertThat(WalkCompiler.compile(GenerationTable.compile("[A-Z]{3}-[0-9]{6}", CharacterSet.UNICODE)))
+                .isNotNull();
+        assertThat(WalkCompiler.compile(GenerationTable.compile("[a-z]{400}", CharacterSet.UNICODE))).isNull();
+        XegerPattern pattern = XegerPattern.compile("[a-z]{400}",
+                XegerConfig.builder().maxGeneratedLength(500).specialized(true).build());
+        assertThat(pattern.generate(new Random(5))).matches("[a-z]{400}");
+    }
+
+    @Test
+    public void tablesAreSpecializedOnce() {
+        GenerationTable table = GenerationTable.compile("(ab|c)+", CharacterSet.UNICODE);
+        assertThat(table.compiledWalk()).isNotNull().isSameAs(table.compiledWalk());
+        GenerationTable large = GenerationTable.compile("[a-z]{400}", CharacterSet.UNICODE);
+        assertThat(large.compiledWalk()).isNull();
+        assertThat(large.compiledWalk()).isNull();
+    }
+}
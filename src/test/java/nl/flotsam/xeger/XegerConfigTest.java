@@ -0,0 +1,124 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerConfigTest {
+
+    @Test
+    public void systemPropertiesOnlySupplyDefaults() {
+        String previous = System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", "42");
+        try {
+            assertThat(XegerConfig.defaults().getMaxGeneratedLength()).isEqualTo(42);
+            assertThat(XegerConfig.builder().maxGeneratedLength(7).build().getMaxGeneratedLength()).isEqualTo(7);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH");
+            } else {
+                System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", previous);
+            }
+        }
+    }
+
+    @Test
+    public void nonPositiveCacheSizesFallBackToTheDefault() {
+        String previous = System.getProperty("nl.flotsam.xeger.CACHE_SIZE");
+        try {
+            System.setProperty("nl.flotsam.xeger.CACHE_SIZE", "0");
+            assertThat(XegerConfig.getPositiveIntProperty("nl.flotsam.xeger.CACHE_SIZE", 1024)).isEqualTo(1024);
+            System.setProperty("nl.flotsam.xeger.CACHE_SIZE", "-5");
+            assertThat(XegerConfig.getPositiveIntProperty("nl.flotsam.xeger.CACHE_SIZE", 1024)).isEqualTo(1024);
+            System.setProperty("nl.flotsam.xeger.CACHE_SIZE", "16");
+            assertThat(XegerConfig.getPositiveIntProperty("nl.flotsam.xeger.CACHE_SIZE", 1024)).isEqualTo(16);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("nl.flotsam.xeger.CACHE_SIZE");
+            } else {
+                System.setProperty("nl.flotsam.xeger.CACHE_SIZE", previous);
+            }
+        }
+    }
+
+    @Test
+    public void generatorsInOneJvmUseTheirOwnLimits() {
+        XegerPattern shortPattern = XegerPattern.compile("(ab)+", XegerConfig.builder().maxGeneratedLength(4).build());
+        XegerPattern longPattern = XegerPattern.compile("(ab)+", XegerConfig.builder().maxGeneratedLength(400).build());
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            assertThat(shortPattern.generate(random).length()).isLessThanOrEqualTo(4);
+        }
+        assertThat(longPattern.generate(random, 300, -1).length()).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    public void settingsAreResolvedWhenCompiled() {
+        XegerPattern pattern = XegerPattern.compile("a+", XegerConfig.builder().maxGeneratedLength(3).build());
+        String previous = System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", "1");
+        try {
+            assertThat(pattern.generate(new Random(1), 3, 3)).isEqualTo("aaa");
+        } finally {
+            if (previous == null) {
+                System.clearProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH");
+            } else {
+                System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", previous);
+            }
+        }
+    }
+
+    @Test
+    public void uniformLengthPolicyAppliesToEveryGenerationMethod() {
+        XegerConfig config = XegerConfig.builder()
+                .lengthPolicy(XegerConfig.LengthPolicy.UNIFORM)
+                .maxGeneratedLength(10)
+                .build();
+        XegerPattern pattern = XegerPattern.compile("[a-z]*", config);
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            assertThat(pattern.generate(random).length()).isGreaterThanOrEqualTo(8);
+        }
+        GeneratedBatch batch = pattern.generateBatch(random, 100);
+        for (int i = 0; i < batch.size(); i++) {
+            assertThat(batch.length(i)).isGreaterThanOrEqualTo(8);
+        }
+    }
+
+    @Test
+    public void compiledGeneratorDrawsItsRandomizerFromTheSupplier() {
+        XegerConfig config = XegerConfig.builder()
+                .characterSet(CharacterSet.LOWERCASE)
+                .randomSupplier(() -> new Random(99))
+                .build();
+        Xeger xeger = Xeger.compile(".{6}", config);
+        Xeger reference = new Xeger(".{6}", new Random(99), CharacterSet.LOWERCASE);
+        assertThat(xeger.getPattern().getCharacterSet()).isEqualTo(CharacterSet.LOWERCASE);
+        for (int i = 0; i < 20; i++) {
+            assertThat(xeger.generate()).isEqualTo(reference.generate());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeLimits() {
+        XegerConfig.builder().maxLoops(-1);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerEnumerationTest {
+
+    @Test
+    public void countsFiniteLanguages() {
+        assertThat(XegerPattern.compile("[A-Z]{3}[0-9]{4}").count()).isEqualTo(BigInteger.valueOf(17576L * 10000));
+        assertThat(XegerPattern.compile("a|bc|()").count()).isEqualTo(BigInteger.valueOf(3));
+        assertThat(XegerPattern.compile("[a-c]|x", CharacterSet.of('x', 'z')).count()).isEqualTo(BigInteger.ONE);
+    }
+
+    @Test
+    public void enumeratesInShortlexOrder() {
+        List<String> values = XegerPattern.compile("b?[ab]|c").enumerate().collect(Collectors.<String>toList());
+        assertThat(values).isEqualTo(Arrays.asList("a", "b", "c", "ba", "bb"));
+    }
+
+    @Test
+    public void rankIsTheInverseOfUnrank() {
+        XegerPattern pattern = XegerPattern.compile("[A-Z]{2}(-[0-9]{1,2})?");
+        long count = pattern.count().longValue();
+        assertThat(count).isEqualTo(676 + 676 * 110);
+        for (long i = 0; i < count; i += 97) {
+            String value = pattern.unrank(i);
+            assertThat(value).matches("[A-Z]{2}(-[0-9]{1,2})?");
+            assertThat(pattern.rank(value)).isEqualTo(BigInteger.valueOf(i));
+        }
+        assertThat(pattern.unrank(0)).isEqualTo("AA");
+        assertThat(pattern.unrank(count - 1)).isEqualTo("ZZ-99");
+    }
+
+    @Test
+    public void ranksLanguagesThatOverflowLongs() {
+        XegerPattern pattern = XegerPattern.compile(".{10}");
+        BigInteger last = BigInteger.valueOf(65536).pow(10).subtract(BigInteger.ONE);
+        assertThat(pattern.count()).isEqualTo(last.add(BigInteger.ONE));
+        assertThat(pattern.unrank(last)).isEqualTo("￿￿￿￿￿￿￿￿￿￿");
+        assertThat(pattern.rank("\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0001"))
+                .isEqualTo(BigInteger.ONE);
+        assertThat(pattern.enumerate().limit(3).count()).isEqualTo(3);
+    }
+
+    @Test
+    public void parallelEnumerationMatchesSequential() {
+        XegerPattern pattern = XegerPattern.compile("[a-f]{2}[0-9]{3}");
+        List<String> sequential = pattern.enumerate().collect(Collectors.<String>toList());
+        List<String> parallel = pattern.enumerate().parallel().collect(Collectors.<String>toList());
+        assertThat(sequential).hasSize(36000);
+        assertThat(parallel).isEqualTo(sequential);
+        assertThat(pattern.enumerate().parallel().distinct().count()).isEqualTo(36000);
+    }
+
+    @Test
+    public void detectsInfiniteLanguages() {
+        assertThat(XegerPattern.compile("a(bc)*d").isFinite()).isFalse();
+        assertThat(XegerPattern.compile("a(bc){0,20}d").isFinite()).isTrue();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesToCountInfiniteLanguages() {
+        XegerPattern.compile("[a-z]+").count();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRankOfNonMatchingValue() {
+        XegerPattern.compile("[a-z]{3}").rank("ab1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnrankPastTheEnd() {
+        XegerPattern.compile("[a-z]{3}").unrank(17576);
+    }
+
+    @Test
+    public void uniqueStreamCoversTheLanguageOnceInShuffledOrder() {
+        XegerPattern pattern = XegerPattern.compile("[a-f]{2}[0-9]{2}");
+        List<String> values = pattern.uniqueStream(42).collect(Collectors.<String>toList());
+        assertThat(values).hasSize(3600);
+        assertThat(new HashSet<String>(values)).hasSize(3600);
+        assertThat(values).isNotEqualTo(pattern.enumerate().collect(Collectors.<String>toList()));
+        assertThat(pattern.uniqueStream(42).parallel().collect(Collectors.<String>toList())).isEqualTo(values);
+        assertThat(pattern.uniqueStream(43).limit(10).collect(Collectors.<String>toList()))
+                .isNotEqualTo(values.subList(0, 10));
+    }
+
+    @Test
+    public void uniqueStreamOfInfiniteLanguageUsesGenerationCap() {
+        List<String> values = XegerPattern.compile("[a-z]+").uniqueStream(1).limit(1000)
+                .collect(Collectors.<String>toList());
+        assertThat(new HashSet<String>(values)).hasSize(1000);
+        for (String value : values) {
+            assertThat(value).matches("[a-z]+");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerGenerateIntoTest {
+
+    private static final String REGEX = "[A-Z]{3}-[0-9]{2,6}";
+
+    @Test
+    public void charArrayMatchesGenerate() {
+        Xeger reference = new Xeger(REGEX, new Random(7));
+        Xeger xeger = new Xeger(REGEX, new Random(7));
+        char[] dest = new char[64];
+        for (int i = 0; i < 100; i++) {
+            int length = xeger.generateInto(dest, 5);
+            assertThat(new String(dest, 5, length)).isEqualTo(reference.generate());
+        }
+    }
+
+    @Test
+    public void charArrayLimitsOutputToAvailableSpace() {
+        Xeger xeger = new Xeger("(ab)+", new Random(7));
+        char[] dest = new char[8];
+        for (int i = 0; i < 100; i++) {
+            int length = xeger.generateInto(dest, 3);
+            assertThat(length).isLessThanOrEqualTo(5);
+            assertThat(new String(dest, 3, length)).matches("(ab)+");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void charArrayRejectsPatternThatCannotFit() {
+        new Xeger("a{20}", new Random(7)).generateInto(new char[8], 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void charArrayRejectsOffsetOutsideArray() {
+        new Xeger(REGEX).generateInto(new char[4], 5);
+    }
+
+    @Test
+    public void heapCharBufferIsWrittenInPlaceAndAdvanced() {
+        Xeger reference = new Xeger(REGEX, new Random(7));
+        Xeger xeger = new Xeger(REGEX, new Random(7));
+        CharBuffer buffer = CharBuffer.allocate(1024);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            xeger.generateInto(buffer);
+            expected.append(reference.generate());
+        }
+        buffer.flip();
+        assertThat(buffer.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void directCharBufferIsSupported() {
+        Xeger reference = new Xeger(REGEX, new Random(7));
+        Xeger xeger = new Xeger(REGEX, new Random(7));
+        CharBuffer buffer = ByteBuffer.allocateDirect(256).asCharBuffer();
+        int length = xeger.generateInto(buffer);
+        buffer.flip();
+        assertThat(buffer.remaining()).isEqualTo(length);
+        assertThat(buffer.toString()).isEqualTo(reference.generate());
+    }
+
+    @Test
+    public void appendablesReceiveTheValue() throws IOException {
+        Xeger reference = new Xeger(REGEX, new Random(7));
+        Xeger xeger = new Xeger(REGEX, new Random(7));
+        StringBuilder builder = new StringBuilder("> ");
+        StringWriter writer = new StringWriter();
+        xeger.generateInto(builder);
+        xeger.generateInto(writer);
+        assertThat(builder.toString()).isEqualTo("> " + reference.generate());
+        assertThat(writer.toString()).isEqualTo(reference.generate());
+    }
+
+    @Test
+    public void steadyStateGenerationDoesNotAllocate() throws IOException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // Explicit limits, whatever other tests left in the system properties.
+        XegerPattern pattern = XegerPattern.compile(REGEX,
+                XegerConfig.builder().maxLoops(8).maxGeneratedLength(100).build());
+        Random random = new Random(7);
+        char[] dest = new char[128];
+        StringBuilder builder = new StringBuilder(128);
+        for (int i = 0; i < 20000; i++) {
+            pattern.generateInto(random, dest, 0);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            pattern.generateInto(random, dest, 0);
+            builder.setLength(0);
+            pattern.generateInto(random, builder);
+            pattern.generateInto(random, CharBuffer.wrap(dest));
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // CharBuffer.wrap is the only allocation per iteration
+        assertThat(allocated).isLessThan(10000L * 64);
+    }
+}
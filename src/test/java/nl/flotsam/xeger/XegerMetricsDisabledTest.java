@@ -0,0 +1,64 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * The default, production configuration: counting off.
+ */
+public class XegerMetricsDisabledTest {
+
+    @Before
+    public void requireMetricsDisabled() {
+        assumeFalse(XegerMetrics.snapshot().isEnabled());
+    }
+
+    @Test
+    public void countersStayZero() {
+        XegerPattern.clearCache();
+        XegerPattern pattern = XegerPattern.compile("[a-z]+[0-9]", XegerConfig.builder().maxLoops(1)
+                .maxGeneratedLength(3).build());
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            pattern.generate(random);
+        }
+        XegerMetrics metrics = XegerMetrics.snapshot();
+        assertThat(metrics.getValuesGenerated()).isZero();
+        assertThat(metrics.getCharsGenerated()).isZero();
+        assertThat(metrics.getTruncations()).isZero();
+        assertThat(metrics.getForcedEscapes()).isZero();
+        assertThat(metrics.getCompilations()).isZero();
+        assertThat(metrics.getCacheStats().getMisses()).isGreaterThan(0);
+    }
+
+    @Test
+    public void noMBeanIsRegistered() throws Exception {
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(XegerMetrics.OBJECT_NAME)))
+                .isFalse();
+    }
+}
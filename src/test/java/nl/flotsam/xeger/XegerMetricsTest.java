@@ -0,0 +1,117 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class XegerMetricsTest {
+
+    @Before
+    public void requireMetrics() {
+        // Enabled by the "metrics" surefire execution, which runs this test in a JVM of its own
+        assumeTrue(XegerMetrics.snapshot().isEnabled());
+    }
+
+    @Test
+    public void countsValuesAndCharacters() {
+        XegerPattern pattern = XegerPattern.compile("[a-z]{3}");
+        XegerMetrics before = XegerMetrics.snapshot();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            pattern.generate(random);
+        }
+        XegerMetrics after = XegerMetrics.snapshot();
+        assertThat(after.getValuesGenerated() - before.getValuesGenerated()).isEqualTo(100);
+        assertThat(after.getCharsGenerated() - before.getCharsGenerated()).isEqualTo(300);
+    }
+
+    @Test
+    public void countsUniformValues() {
+        XegerPattern pattern = XegerPattern.compile("[a-z]{2,4}");
+        XegerMetrics before = XegerMetrics.snapshot();
+        Random random = new Random(3);
+        long chars = 0;
+        for (int i = 0; i < 50; i++) {
+            chars += pattern.generateUniform(random).length();
+            chars += pattern.generateUniform(random, 3, 3).length();
+        }
+        XegerMetrics after = XegerMetrics.snapshot();
+        assertThat(after.getValuesGenerated() - before.getValuesGenerated()).isEqualTo(100);
+        assertThat(after.getCharsGenerated() - before.getCharsGenerated()).isEqualTo(chars);
+    }
+
+    @Test
+    public void countsForcedEscapesAndTruncations() {
+        XegerConfig config = XegerConfig.builder().maxLoops(2).maxGeneratedLength(6).build();
+        XegerPattern pattern = XegerPattern.compile("[a-z]+[0-9]+", config);
+        XegerMetrics before = XegerMetrics.snapshot();
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            assertThat(pattern.generate(random)).matches("[a-z]+[0-9]+");
+        }
+        XegerMetrics after = XegerMetrics.snapshot();
+        assertThat(after.getForcedEscapes()).isGreaterThan(before.getForcedEscapes());
+
+        XegerPattern capped = XegerPattern.compile("[a-z]+[0-9]", XegerConfig.builder().maxLoops(100)
+                .maxGeneratedLength(3).build());
+        before = XegerMetrics.snapshot();
+        for (int i = 0; i < 200; i++) {
+            assertThat(capped.generate(random)).matches("[a-z]{1,2}[0-9]");
+        }
+        assertThat(XegerMetrics.snapshot().getTruncations()).isGreaterThan(before.getTruncations());
+    }
+
+    @Test
+    public void countsCompilationsAndCharsetDeadEnds() {
+        // Compiled patterns left in the cache by other tests would not be compiled again.
+        XegerPattern.clearCache();
+        XegerMetrics before = XegerMetrics.snapshot();
+        XegerPattern.compile("x[0-9]{2}y", CharacterSet.PRINTABLE_ASCII);
+        try {
+            XegerPattern.compile("[0-9]+", CharacterSet.of('a', 'z'));
+        } catch (IllegalArgumentException expected) {
+            // no digit is in the set
+        }
+        XegerMetrics after = XegerMetrics.snapshot();
+        assertThat(after.getCompilations() - before.getCompilations()).isEqualTo(2);
+        assertThat(after.getCharsetDeadEnds() - before.getCharsetDeadEnds()).isEqualTo(1);
+        assertThat(after.getCompileTimeMeanNanos()).isGreaterThan(0);
+        assertThat(after.getCompileTimeQuantileNanos(0.99)).isGreaterThan(0);
+    }
+
+    @Test
+    public void publishesCountersOverJmx() throws Exception {
+        XegerPattern.compile("[ab]{2}").generate(new Random(4));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(XegerMetrics.OBJECT_NAME);
+        assertThat(server.isRegistered(name)).isTrue();
+        assertThat((Boolean) server.getAttribute(name, "Enabled")).isTrue();
+        assertThat((Long) server.getAttribute(name, "ValuesGenerated")).isGreaterThan(0);
+        assertThat((Long) server.getAttribute(name, "CacheMisses")).isGreaterThanOrEqualTo(0);
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerPatternTest {
+
+    @Test
+    public void generatorMatchesXegerForSameSeed() {
+        XegerPattern pattern = XegerPattern.compile("[ab]{4,6}c");
+        Xeger generator = pattern.generator(new Random(1000));
+        Xeger reference = new Xeger("[ab]{4,6}c", new Random(1000));
+        for (int i = 0; i < 100; i++) {
+            assertThat(generator.generate()).isEqualTo(reference.generate());
+        }
+    }
+
+    @Test
+    public void lengthBoundsApplyToSingleCallOnly() {
+        Xeger xeger = new Xeger("a*", new Random(42));
+        assertThat(xeger.generate(-1, 0)).isEmpty();
+        int nonEmpty = 0;
+        for (int i = 0; i < 100; i++) {
+            if (!xeger.generate().isEmpty()) {
+                nonEmpty++;
+            }
+        }
+        assertThat(nonEmpty).isGreaterThan(0);
+    }
+
+    @Test
+    public void sharedPatternIsSafeAcrossThreads() throws Exception {
+        final XegerPattern pattern = XegerPattern.compile("[0-9]{4}-[a-f]{2,3}");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int matching = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            String value = pattern.generate(ThreadLocalRandom.current(), 7, 7);
+                            if (value.matches("[0-9]{4}-[a-f]{2,3}") && value.length() == 7) {
+                                matching++;
+                            }
+                        }
+                        return matching;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertThat(future.get()).isEqualTo(1000);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void exposesRegexAndCharacterSet() {
+        XegerPattern pattern = XegerPattern.compile("[a-z]+", CharacterSet.PRINTABLE_ASCII);
+        assertThat(pattern.getRegex()).isEqualTo("[a-z]+");
+        assertThat(pattern.getCharacterSet()).isEqualTo(CharacterSet.PRINTABLE_ASCII);
+        assertThat(pattern.generator(new Random()).getPattern()).isSameAs(pattern);
+    }
+
+    @Test
+    public void lengthBoundsAreAlwaysMet() {
+        String[][] cases = {{"[a-z]*", "3", "5"}, {"ab*", "6", "8"}, {"(ab)+", "7", "9"}, {"a*b+", "5", "10"},
+                {"(abc|d)*", "9", "9"}, {"[0-9]{2,40}", "-1", "4"}, {"x+", "8", "-1"}};
+        Random random = new Random(7);
+        for (String[] c : cases) {
+            XegerPattern pattern = XegerPattern.compile(c[0]);
+            int min = Integer.parseInt(c[1]);
+            int max = Integer.parseInt(c[2]);
+            for (int i = 0; i < 500; i++) {
+                String value = pattern.generate(random, min, max);
+                assertThat(value).matches(c[0]);
+                assertThat(value.length()).isGreaterThanOrEqualTo(min);
+                if (max > -1) {
+                    assertThat(value.length()).isLessThanOrEqualTo(max);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsatisfiableLengthBoundsFailFast() {
+        XegerPattern.compile("a{3}").generate(new Random(), 5, 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lengthBoundsOfOnlyOddLengthsFailFast() {
+        XegerPattern.compile("(ab)+").generate(new Random(), 3, 3);
+    }
+
+    @Test
+    public void uniformGenerationReachesLongStrings() {
+        XegerPattern pattern = XegerPattern.compile("[A-Z]*");
+        Random random = new Random(11);
+        for (int i = 0; i < 100; i++) {
+            String value = pattern.generateUniform(random, -1, 8);
+            assertThat(value).matches("[A-Z]*");
+            // 26^8 of the roughly 1.04 * 26^8 strings have exactly 8 characters
+            assertThat(value.length()).isGreaterThanOrEqualTo(6);
+        }
+        assertThat(pattern.generateUniform(random, 3, 3)).hasSize(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void uniformGenerationRejectsEmptyWindow() {
+        XegerPattern.compile("a{3}").generateUniform(new Random(), 4, 8);
+    }
+
+    @Test
+    public void valuesAlwaysMatchAndStayWithinTheCap() {
+        String[] regexes = {"(abc|d)*x", "[a-z]*[0-9]{5}", "((ab)*c)*de{3}", "a+b+c+"};
+        Random random = new Random(9);
+        for (String regex : regexes) {
+            XegerPattern pattern = XegerPattern.compile(regex);
+            for (int i = 0; i < 500; i++) {
+                char[] dest = new char[12];
+                int length = pattern.generateInto(random, dest, 0);
+                assertThat(new String(dest, 0, length)).matches(regex);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPatternsLongerThanTheCap() {
+        XegerPattern.compile("a{150}").generate(new Random());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerPublisherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final XegerPattern pattern = XegerPattern.compile("[a-f]{2,5}-[0-9]{3}", XegerConfig.builder()
+            .maxLoops(8).maxGeneratedLength(100).randomSupplier(() -> new Random(42)).build());
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void deliversExactlyTheRequestedValues() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new XegerPublisher(pattern, executor, 4).subscribe(subscriber);
+        subscriber.subscription.request(10);
+        subscriber.awaitValues(10);
+        Thread.sleep(50);
+        assertThat(subscriber.values).hasSize(10);
+
+        subscriber.subscription.request(3);
+        subscriber.awaitValues(13);
+        Thread.sleep(50);
+        assertThat(subscriber.values).hasSize(13);
+        assertThat(subscriber.error.get()).isNull();
+    }
+
+    @Test
+    public void valuesFollowTheSeededSequence() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new XegerPublisher(pattern, executor, 16).subscribe(subscriber);
+        subscriber.subscription.request(100);
+        subscriber.awaitValues(100);
+        Random random = new Random(42);
+        for (String value : subscriber.values) {
+            assertThat(value).isEqualTo(pattern.generate(random)).matches("[a-f]{2,5}-[0-9]{3}");
+        }
+    }
+
+    @Test
+    public void unboundedDemandStopsOnCancel() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new XegerPublisher(pattern, executor, 64).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.awaitValues(1000);
+        subscriber.subscription.cancel();
+        Thread.sleep(50);
+        int delivered = subscriber.values.size();
+        Thread.sleep(50);
+        assertThat(subscriber.values).hasSize(delivered);
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsError() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new XegerPublisher(pattern, executor, 4).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertThat(subscriber.errored.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error.get()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void unreachablePatternSignalsError() throws Exception {
+        XegerPattern tooLong = XegerPattern.compile("x{200}", XegerConfig.builder().maxGeneratedLength(100).build());
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new XegerPublisher(tooLong, executor, 4).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertThat(subscriber.errored.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.values).isEmpty();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullSubscriber() {
+        new XegerPublisher(pattern).subscribe(null);
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<String> {
+
+        final List<String> values = new CopyOnWriteArrayList<String>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final CountDownLatch errored = new CountDownLatch(1);
+        volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+            errored.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            throw new AssertionError("Endless publisher completed");
+        }
+
+        void awaitValues(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (values.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(values.size()).isGreaterThanOrEqualTo(count);
+        }
+    }
+}
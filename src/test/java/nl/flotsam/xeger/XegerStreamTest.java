@@ -22,6 +22,8 @@ import org.junit.Test;
 
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -76,4 +78,49 @@ public class XegerStreamTest {
         long count = xeger.stream().limit(500).parallel().filter(s -> s.matches("[0-9]{4}")).count();
         assertThat(count).isEqualTo(500);
     }
+
+    @Test
+    public void parallelStreamGeneratesMatchingValues() {
+        Xeger xeger = new Xeger("[A-Z]{3}-[0-9]{2,4}", new Random(42));
+        long count = xeger.parallelStream().limit(10000).filter(s -> s.matches("[A-Z]{3}-[0-9]{2,4}")).count();
+        assertThat(count).isEqualTo(10000);
+    }
+
+    @Test
+    public void sizedStreamIsIndependentOfParallelism() throws Exception {
+        XegerPattern pattern = XegerPattern.compile("[a-z]{2,8}");
+        List<String> sequential = pattern.sizedStream(5000, 99).collect(Collectors.toList());
+        assertThat(sequential).hasSize(5000);
+        for (int threads : new int[]{1, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<String> parallel = pool.submit(
+                        () -> pattern.sizedStream(5000, 99).parallel().collect(Collectors.toList())).get();
+                assertThat(parallel).isEqualTo(sequential);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void sizedStreamDependsOnSeed() {
+        XegerPattern pattern = XegerPattern.compile("[a-z]{8}");
+        List<String> first = pattern.sizedStream(20, 1).collect(Collectors.toList());
+        List<String> second = pattern.sizedStream(20, 2).collect(Collectors.toList());
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    public void sizedStreamSeedsFollowSplittableRandom() {
+        SplittableRandom reference = new SplittableRandom(42);
+        for (int i = 0; i < 10; i++) {
+            assertThat(SplitMixRandom.seedAt(42, i)).isEqualTo(reference.nextLong());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizedStreamRejectsNegativeCount() {
+        XegerPattern.compile("a").sizedStream(-1, 0);
+    }
 }
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerConfig;
+import nl.flotsam.xeger.XegerPattern;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerCommandTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void seededOutputDoesNotDependOnThreads() throws IOException {
+        Path single = folder.getRoot().toPath().resolve("single.txt");
+        Path parallel = folder.getRoot().toPath().resolve("parallel.txt");
+        int count = 2 * XegerCommand.CHUNK_SIZE + 100;
+        assertThat(run("-q", "--seed", "42", "-n", String.valueOf(count), "-o", single.toString(),
+                "[a-z]{2,6}", "(ab|c)*x")).isEqualTo(0);
+        assertThat(run("-q", "--seed", "42", "-n", String.valueOf(count), "-o", parallel.toString(),
+                "--threads", "4", "[a-z]{2,6}", "(ab|c)*x")).isEqualTo(0);
+        List<String> lines = Files.readAllLines(single, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2 * count);
+        assertThat(Files.readAllLines(parallel, StandardCharsets.UTF_8)).isEqualTo(lines);
+        assertThat(lines.get(0)).matches("[a-z]{2,6}");
+        assertThat(lines.get(count)).matches("(ab|c)*x");
+    }
+
+    @Test
+    public void firstChunkMatchesSingleRandomWithSeed() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        assertThat(run("-q", "--seed", "7", "-n", "1000", "-o", path.toString(), "[0-9a-f]{4,12}")).isEqualTo(0);
+        XegerPattern pattern = XegerPattern.compile("[0-9a-f]{4,12}", XegerConfig.defaults());
+        Random random = new Random(7);
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            assertThat(line).isEqualTo(pattern.generate(random));
+        }
+    }
+
+    @Test
+    public void appliesLengthBoundsInParallel() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        assertThat(run("-q", "-n", "5000", "--threads", "3", "--min-length", "5", "--max-length", "7",
+                "-o", path.toString(), "a*b+")).isEqualTo(0);
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(5000);
+        for (String line : lines) {
+            assertThat(line).matches("a*b+");
+            assertThat(line.length()).isGreaterThanOrEqualTo(5).isLessThanOrEqualTo(7);
+        }
+    }
+
+    @Test
+    public void readsPatternsFileAndReportsFailuresWithoutAborting() throws IOException {
+        Path patterns = folder.newFile("patterns.txt").toPath();
+        Files.write(patterns, Arrays.asList("[a-z]{3}", "", "a||b(", "[0-9]{2}", "x{500}"), StandardCharsets.UTF_8);
+        Path sequential = folder.getRoot().toPath().resolve("sequential.txt");
+        Path ordered = folder.getRoot().toPath().resolve("ordered.txt");
+        Path unordered = folder.getRoot().toPath().resolve("unordered.txt");
+        assertThat(run("-q", "--seed", "5", "-n", "20000", "-f", patterns.toString(), "-o", sequential.toString()))
+                .isEqualTo(1);
+        assertThat(run("-q", "--seed", "5", "-n", "20000", "-f", patterns.toString(), "-o", ordered.toString(),
+                "--threads", "3")).isEqualTo(1);
+        assertThat(run("-q", "--seed", "5", "-n", "20000", "-f", patterns.toString(), "-o", unordered.toString(),
+                "--threads", "3", "--unordered")).isEqualTo(1);
+
+        List<String> lines = Files.readAllLines(sequential, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(40000);
+        assertThat(lines.get(0)).matches("[a-z]{3}");
+        assertThat(lines.get(39999)).matches("[0-9]{2}");
+        assertThat(Files.readAllLines(ordered, StandardCharsets.UTF_8)).isEqualTo(lines);
+        List<String> sorted = new ArrayList<String>(lines);
+        Collections.sort(sorted);
+        List<String> unorderedLines = new ArrayList<String>(Files.readAllLines(unordered, StandardCharsets.UTF_8));
+        Collections.sort(unorderedLines);
+        assertThat(unorderedLines).isEqualTo(sorted);
+    }
+
+    @Test
+    public void compilesFailingPatternsOnceInParallel() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream previous = System.err;
+        long misses = Xeger.cacheStats().getMisses();
+        System.setErr(new PrintStream(err, true, "UTF-8"));
+        try {
+            assertThat(run("-q", "-n", String.valueOf(3 * XegerCommand.CHUNK_SIZE), "--threads", "3",
+                    "-o", path.toString(), "a||b(", "q[0-9]{3}-once")).isEqualTo(1);
+        } finally {
+            System.setErr(previous);
+        }
+        assertThat(Xeger.cacheStats().getMisses() - misses).isEqualTo(2);
+        assertThat(new String(err.toByteArray(), StandardCharsets.UTF_8).split("\n"))
+                .containsExactly("xeger: pattern #1 (a||b(): unexpected end-of-string");
+        assertThat(Files.readAllLines(path, StandardCharsets.UTF_8)).hasSize(3 * XegerCommand.CHUNK_SIZE);
+    }
+
+    @Test
+    public void readsStandardInputAsUtf8() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        InputStream previous = System.in;
+        System.setIn(new ByteArrayInputStream("\u00e9{3}\n\u20ac\n".getBytes(StandardCharsets.UTF_8)));
+        try {
+            assertThat(run("-q", "-f", "-", "-o", path.toString())).isEqualTo(0);
+        } finally {
+            System.setIn(previous);
+        }
+        assertThat(Files.readAllLines(path, StandardCharsets.UTF_8)).containsExactly("\u00e9\u00e9\u00e9", "\u20ac");
+    }
+
+    @Test
+    public void rowsSubcommandWritesCsv() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("rows.csv");
+        assertThat(run("rows", "-q", "-n", "10000", "--seed", "1", "--threads", "2", "-o", path.toString(),
+                "id=[A-Z]{3}", "pair=[0-9]=[0-9]")).isEqualTo(0);
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(10001);
+        assertThat(lines.get(0)).isEqualTo("id,pair");
+        assertThat(lines.get(1)).matches("[A-Z]{3},[0-9]=[0-9]");
+    }
+
+    @Test
+    public void rejectsNonPositiveThreads() {
+        assertThat(run("--threads", "0", "a")).isEqualTo(2);
+    }
+
+    @Test
+    public void rejectsMaxGeneratedLengthBeyondTheOutputBuffer() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("out.txt");
+        String previous = System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH",
+                String.valueOf(LineWriter.BUFFER_SIZE + 1));
+        try {
+            assertThat(run("-q", "-o", path.toString(), "[a-z]{3}")).isEqualTo(1);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH");
+            } else {
+                System.setProperty("nl.flotsam.xeger.MAX_GENERATED_LENGTH", previous);
+            }
+        }
+        assertThat(Files.exists(path)).isFalse();
+    }
+
+    @Test
+    public void analyzeSubcommandReportsEachPattern() {
+        StringWriter out = new StringWriter();
+        CommandLine commandLine = new CommandLine(new XegerCommand());
+        commandLine.setOut(new PrintWriter(out));
+        assertThat(commandLine.execute("analyze", "--max-states", "1000", "[0-9]{2,4}-x?", "(a|b)*a(a|b){25}",
+                "a+")).isEqualTo(1);
+        String report = out.toString();
+        assertThat(report).contains("pattern:        [0-9]{2,4}-x?");
+        assertThat(report).contains("language size:  22200");
+        assertThat(report).contains("max length:     infinite");
+        assertThat(report).doesNotContain("(a|b)*a(a|b){25}");
+    }
+
+    private static int run(String... args) {
+        return new CommandLine(new XegerCommand()).execute(args);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.cli;
+
+import nl.flotsam.xeger.CharacterSet;
+import nl.flotsam.xeger.XegerConfig;
+import nl.flotsam.xeger.XegerPattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XegerServerTest {
+
+    private XegerServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        XegerConfig config = XegerConfig.builder().characterSet(CharacterSet.UNICODE).maxStates(1000).build();
+        server = XegerServer.start(new InetSocketAddress("127.0.0.1", 0), 2, config, 1000, 4096);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void generatesForEachPostedPattern() throws IOException {
+        String response = request("POST", "/generate?count=3&seed=42", "[0-9]{4}\n\n[a-z]{2}\n");
+        XegerPattern digits = XegerPattern.compile("[0-9]{4}", XegerConfig.defaults());
+        XegerPattern letters = XegerPattern.compile("[a-z]{2}", XegerConfig.defaults());
+        Random first = new Random(42);
+        Random second = new Random(42);
+        assertThat(response).isEqualTo("{\"results\":["
+                + "{\"pattern\":\"[0-9]{4}\",\"values\":[\"" + digits.generate(first) + "\",\""
+                + digits.generate(first) + "\",\"" + digits.generate(first) + "\"]},"
+                + "{\"pattern\":\"[a-z]{2}\",\"values\":[\"" + letters.generate(second) + "\",\""
+                + letters.generate(second) + "\",\"" + letters.generate(second) + "\"]}]}\n");
+    }
+
+    @Test
+    public void reportsFailingPatternsAlongsideOthers() throws IOException {
+        String response = request("GET", "/generate?count=2&charset=DIGITS&pattern="
+                + URLEncoder.encode("[a-z]+", "UTF-8"), null);
+        assertThat(response).startsWith("{\"results\":[{\"pattern\":\"[a-z]+\",\"error\":\"No string matching");
+
+        response = request("POST", "/generate?minLength=3&maxLength=3", "a||b(\n\\\"{3}\n");
+        assertThat(response).isEqualTo("{\"results\":[{\"pattern\":\"a||b(\",\"error\":\"unexpected end-of-string\"},"
+                + "{\"pattern\":\"\\\\\\\"{3}\",\"values\":[\"\\\"\\\"\\\"\"]}]}\n");
+    }
+
+    @Test
+    public void rejectsOversizedAndMalformedRequests() throws IOException {
+        assertThat(status("GET", "/generate?count=1001&pattern=a")).isEqualTo(400);
+        assertThat(status("GET", "/generate?count=x&pattern=a")).isEqualTo(400);
+        assertThat(status("GET", "/generate")).isEqualTo(400);
+        assertThat(status("DELETE", "/generate?pattern=a")).isEqualTo(405);
+        assertThat(status("GET", "/health")).isEqualTo(200);
+    }
+
+    @Test
+    public void reportsPatternsBeyondTheCompileBudgetAlongsideOthers() throws IOException {
+        String response = request("POST", "/generate?seed=1", "[a-z]{3}\n(a|b)*a(a|b){25}\n");
+        XegerPattern letters = XegerPattern.compile("[a-z]{3}", XegerConfig.defaults());
+        assertThat(response).startsWith("{\"results\":[{\"pattern\":\"[a-z]{3}\",\"values\":[\""
+                + letters.generate(new Random(1)) + "\"]},{\"pattern\":\"(a|b)*a(a|b){25}\",\"error\":\"Determinizing "
+                + "(a|b)*a(a|b){25} needs more than 1000 states\"}]}");
+        assertThat(request("GET", "/generate?pattern=" + URLEncoder.encode("(a|b)*a(a|b){5}", "UTF-8"), null))
+                .contains("\"values\"");
+    }
+
+    @Test
+    public void rejectsOversizedBodies() throws IOException {
+        StringBuilder body = new StringBuilder();
+        while (body.length() <= 4096) {
+            body.append("[0-9]{4}\n");
+        }
+        assertThat(connect("POST", "/generate", body.toString()).getResponseCode()).isEqualTo(413);
+        assertThat(connect("POST", "/generate", "[0-9]{4}\n").getResponseCode()).isEqualTo(200);
+    }
+
+    @Test
+    public void keepsCompiledPatternsBetweenRequests() throws IOException {
+        request("GET", "/generate?pattern=" + URLEncoder.encode("[A-Z]{3}-[0-9]{9}", "UTF-8"), null);
+        String before = request("GET", "/stats", null);
+        request("GET", "/generate?pattern=" + URLEncoder.encode("[A-Z]{3}-[0-9]{9}", "UTF-8"), null);
+        String after = request("GET", "/stats", null);
+        assertThat(hits(after)).isGreaterThan(hits(before));
+    }
+
+    private static long hits(String stats) {
+        return Long.parseLong(stats.replaceAll("^\\{\"hits\":(\\d+),.*\\s*$", "$1").trim());
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = connect(method, path, body);
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private int status(String method, String path) throws IOException {
+        return connect(method, path, null).getResponseCode();
+    }
+
+    private HttpURLConnection connect(String method, String path, String body) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+}
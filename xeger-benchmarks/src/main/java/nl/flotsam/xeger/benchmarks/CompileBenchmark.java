@@ -0,0 +1,77 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.benchmarks;
+
+import nl.flotsam.xeger.CharacterSet;
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a regular expression into something that can generate: a fresh {@link Xeger} (full
+ * determinization every time) against a cache hit in {@link XegerPattern#compile(String, CharacterSet)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompileBenchmark {
+
+    @Param({"literal", "class4", "class16", "class64", "negation", "dotStar", "alternation", "shorthand"})
+    public String family;
+
+    @Param({"UNICODE", "ASCII", "PRINTABLE_ASCII"})
+    public String charset;
+
+    private String regex;
+    private CharacterSet characterSet;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() {
+        regex = Patterns.regex(family);
+        characterSet = Patterns.characterSet(charset);
+        XegerPattern.compile(regex, characterSet);
+    }
+
+    @Benchmark
+    public Xeger construct() {
+        return new Xeger(regex, random, characterSet);
+    }
+
+    @Benchmark
+    public XegerPattern compileCached() {
+        return XegerPattern.compile(regex, characterSet);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.benchmarks;
+
+import nl.flotsam.xeger.GeneratedBatch;
+import nl.flotsam.xeger.PatternAnalysis;
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded {@link Xeger#generate()} throughput per pattern family and character set, with and without
+ * bytecode specialization of the walk. Run with {@code -prof gc} to report the allocation rate per generated value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerateBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"literal", "class4", "class16", "class64", "negation", "dotStar", "alternation", "shorthand"})
+    public String family;
+
+    @Param({"UNICODE", "ASCII", "PRINTABLE_ASCII"})
+    public String charset;
+
+    @Param({"false", "true"})
+    public boolean specialized;
+
+    private Xeger xeger;
+
+    // Length window of generateBounded(): always satisfiable, and narrower than the family's own range if it can be.
+    private int minLength;
+    private int maxLength;
+
+    @Setup
+    public void setUp() {
+        XegerConfig config = XegerConfig.builder()
+                .characterSet(Patterns.characterSet(charset))
+                .specialized(specialized)
+                .randomSupplier(() -> new Random(42))
+                .build();
+        xeger = Xeger.compile(Patterns.regex(family), config);
+        PatternAnalysis analysis = Xeger.analyze(Patterns.regex(family), config);
+        minLength = analysis.getMinLength();
+        maxLength = analysis.isFinite() ? Math.min(analysis.getMaxLength(), minLength + 8) : minLength + 8;
+    }
+
+    @Benchmark
+    public String generate() {
+        return xeger.generate();
+    }
+
+    @Benchmark
+    public String generateBounded() {
+        return xeger.generate(minLength, maxLength);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public GeneratedBatch generateBatch() {
+        return xeger.generateBatch(BATCH_SIZE);
+    }
+}
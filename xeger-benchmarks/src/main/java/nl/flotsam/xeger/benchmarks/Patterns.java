@@ -0,0 +1,59 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.benchmarks;
+
+import nl.flotsam.xeger.CharacterSet;
+
+/**
+ * Representative pattern families shared by the benchmarks, selected by name through JMH {@code @Param}s.
+ */
+final class Patterns {
+
+    static final String ALTERNATION_WORDS = "(alpha|bravo|charlie|delta|echo|foxtrot|golf|hotel|india|juliett"
+            + "|kilo|lima|mike|november|oscar|papa|quebec|romeo|sierra|tango|uniform|victor|whiskey|xray"
+            + "|yankee|zulu)";
+
+    private Patterns() {
+    }
+
+    static String regex(String family) {
+        switch (family) {
+            case "literal":     return "order-confirmed-0001";
+            case "class4":      return "[a-z]{4}";
+            case "class16":     return "[a-z]{16}";
+            case "class64":     return "[a-z]{64}";
+            case "negation":    return "[^abc]{8}";
+            case "dotStar":     return ".*-.*-.*";
+            case "alternation": return ALTERNATION_WORDS + "(-" + ALTERNATION_WORDS + "){2}";
+            case "shorthand":   return "\\d{3}-\\w{6}\\s\\d{2}";
+            default:
+                throw new IllegalArgumentException("Unknown pattern family: " + family);
+        }
+    }
+
+    static CharacterSet characterSet(String name) {
+        switch (name) {
+            case "UNICODE":         return CharacterSet.UNICODE;
+            case "ASCII":           return CharacterSet.ASCII;
+            case "PRINTABLE_ASCII": return CharacterSet.PRINTABLE_ASCII;
+            default:
+                throw new IllegalArgumentException("Unknown character set: " + name);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2009 Wilfred Springer
+ * Copyright 2012 Jason Pell
+ * Copyright 2013 Antonio García-Domínguez
+ * Copyright 2013 Roberto Ramírez Vique
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.flotsam.xeger.benchmarks;
+
+import nl.flotsam.xeger.Xeger;
+import nl.flotsam.xeger.XegerPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to drain a fixed number of values through the stream API, sequentially and in parallel on the common
+ * fork-join pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    @Param({"class16", "alternation"})
+    public String family;
+
+    @Param({"100000"})
+    public long count;
+
+    private Xeger xeger;
+    private XegerPattern pattern;
+
+    @Setup
+    public void setUp() {
+        pattern = XegerPattern.compile(Patterns.regex(family));
+        xeger = pattern.generator(new Random(42));
+    }
+
+    @Benchmark
+    public long sequential() {
+        return xeger.stream().limit(count).mapToInt(String::length).sum();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return xeger.parallelStream().limit(count).mapToInt(String::length).sum();
+    }
+
+    @Benchmark
+    public long sizedParallel() {
+        return pattern.sizedStream(count, 42L).parallel().mapToInt(String::length).sum();
+    }
+}